@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import java.util.concurrent.TimeUnit;
+
+import com.addthis.basis.util.LessBytes;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Test the speed of the Bin2 buffer primitive read/ write paths versus LessBytes over streams.
+ */
+@BenchmarkMode(Mode.Throughput) // measure as ops/ time_unit
+@OutputTimeUnit(TimeUnit.MICROSECONDS) // time_unit is microseconds
+@Warmup(iterations = 2, time = 1, timeUnit = TimeUnit.SECONDS) // how long to warm up the jvm
+@Measurement(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS) // how many runs to average over
+@Fork(1) // how many JVM forks per test; measurements are run per fork
+@Threads(1) // how many threads to run concurrently; thread count is per test -- not shared
+@State(Scope.Thread) // treat this enclosing class as a State object that can be used in tests
+public class PrimitiveOps {
+
+    /**
+     * To run this benchmark, do 'mvn clean package' from the bench directory, and then either
+     *
+     * use the default JMH main class (it takes a regex of benchmark names):
+     * 'java -jar target/microbenchmarks.jar ".*PrimitiveOps.*"'
+     *
+     * call this main method instead or use the code therein to start it programmatically
+     * eg. 'java -cp target/microbenchmarks.jar com.addthis.codec.binary.PrimitiveOps'
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + PrimitiveOps.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    static final int VALUES = 256;
+
+    int[]                 ints;
+    long[]                longs;
+    byte[]                encoded;
+    BufferOut             bufferOut;
+    BufferIn              bufferIn;
+    ByteArrayOutputStream streamOut;
+
+    @Setup(Level.Trial)
+    public void makeValues() throws IOException {
+        ints = new int[VALUES];
+        longs = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            ints[i] = i * 31;
+            longs[i] = i * 131L;
+        }
+        bufferOut = new BufferOut();
+        bufferIn = new BufferIn();
+        streamOut = new ByteArrayOutputStream();
+        for (int i = 0; i < VALUES; i++) {
+            LessBytes.writeInt(ints[i], streamOut);
+            LessBytes.writeLong(longs[i], streamOut);
+        }
+        encoded = streamOut.toByteArray();
+    }
+
+    @Benchmark
+    public int lessBytesWrite() throws IOException {
+        streamOut.reset();
+        for (int i = 0; i < VALUES; i++) {
+            LessBytes.writeInt(ints[i], streamOut);
+            LessBytes.writeLong(longs[i], streamOut);
+        }
+        return streamOut.size();
+    }
+
+    @Benchmark
+    public int bufferWrite() {
+        bufferOut.reset();
+        for (int i = 0; i < VALUES; i++) {
+            bufferOut.writeInt(ints[i]);
+            bufferOut.writeLong(longs[i]);
+        }
+        return bufferOut.size();
+    }
+
+    @Benchmark
+    public int bufferWriteArrays() {
+        bufferOut.reset();
+        bufferOut.writeInts(ints);
+        bufferOut.writeLongs(longs);
+        return bufferOut.size();
+    }
+
+    @Benchmark
+    public long lessBytesRead() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(encoded);
+        long sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += LessBytes.readInt(in);
+            sum += LessBytes.readLong(in);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long bufferRead() throws IOException {
+        bufferIn.reset(encoded);
+        long sum = 0;
+        for (int i = 0; i < VALUES; i++) {
+            sum += bufferIn.readInt();
+            sum += bufferIn.readLong();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+/**
+ * Unchecked big-endian primitive access to byte arrays. Callers are responsible for bounds
+ * checks, which lets {@link BufferOut} and {@link BufferIn} hoist a single check over a run of
+ * fixed width values. Matches the byte order used by LessBytes so the wire format is unchanged.
+ */
+final class Bin2Bytes {
+    private Bin2Bytes() {}
+
+    static void putShort(byte[] b, int off, short v) {
+        b[off]     = (byte) (v >>> 8);
+        b[off + 1] = (byte) v;
+    }
+
+    static void putInt(byte[] b, int off, int v) {
+        b[off]     = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    static void putLong(byte[] b, int off, long v) {
+        putInt(b, off, (int) (v >>> 32));
+        putInt(b, off + 4, (int) v);
+    }
+
+    static short getShort(byte[] b, int off) {
+        return (short) (((b[off] & 0xff) << 8) | (b[off + 1] & 0xff));
+    }
+
+    static int getInt(byte[] b, int off) {
+        return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16) |
+               ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+    }
+
+    static long getLong(byte[] b, int off) {
+        return ((long) getInt(b, off) << 32) | (getInt(b, off + 4) & 0xffffffffL);
+    }
+}
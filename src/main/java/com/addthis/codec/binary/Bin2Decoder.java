@@ -0,0 +1,470 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import javax.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.addthis.basis.util.LessBytes;
+
+import com.addthis.codec.codables.PostDecodeCollector;
+import com.addthis.codec.codables.SuperCodable;
+import com.addthis.codec.reflection.CodableClassInfo;
+import com.addthis.codec.reflection.CodableFieldInfo;
+import com.addthis.codec.reflection.Fields;
+import com.addthis.codec.reflection.TypeDescriptor;
+
+import com.google.common.base.Strings;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reusable decoding context for {@link CodecBin2}. Keeps its input buffer and class info lookups,
+ * including resolved plugin type names, between calls.
+ *
+ * Instances are not thread safe. Either keep one per thread or use the static methods on
+ * {@link CodecBin2}, which do exactly that. Re-entrant calls (eg. from a postDecode method)
+ * are handled by falling back to a temporary decoder.
+ */
+public final class Bin2Decoder {
+
+    private static final Logger log = LoggerFactory.getLogger(Bin2Decoder.class);
+
+    private final boolean charstring;
+    private final Bin2Limits limits;
+    private final BufferIn buf;
+    private final Map<Class<?>, CodableClassInfo> classInfos;
+    private final Map<CodableClassInfo, Map<String, Class<?>>> subTypes;
+    private final Map<CodableClassInfo, FixedLayout> layouts;
+    /** Local lookups are skipped when classes must stay unloadable; see {@link Fields#weakClassKeys()}. */
+    private final boolean cacheClasses;
+
+    private boolean active;
+    private int fieldsGeneration;
+    /** Bytes used by the most recent decode; lets buffer based callers advance past it. */
+    private int consumed;
+    private int depth;
+    /** True while decoding a {@link CodecBin2#FIXED_LAYOUT_CODEC_VERSION} message. */
+    private boolean fixedLayout;
+    /** Receives postDecode calls instead of running them, when set. */
+    @Nullable private PostDecodeCollector collector;
+
+    public Bin2Decoder() {
+        this(Bin2Limits.DEFAULT);
+    }
+
+    public Bin2Decoder(Bin2Limits limits) {
+        this(false, limits);
+    }
+
+    Bin2Decoder(boolean charstring, Bin2Limits limits) {
+        this.charstring = charstring;
+        this.limits = limits;
+        this.buf = new BufferIn();
+        this.classInfos = new IdentityHashMap<>();
+        this.subTypes = new IdentityHashMap<>();
+        this.layouts = new IdentityHashMap<>();
+        this.cacheClasses = !Fields.weakClassKeys();
+        this.fieldsGeneration = Fields.generation();
+    }
+
+    /** Decode the data, including the version header, into the provided shell object. */
+    @Nullable public Object decode(Object shell, byte[] data) throws Exception {
+        limits.checkBytes(data.length);
+        return decode(shell, data, 0, data.length);
+    }
+
+    /**
+     * Decode the data into the provided shell object, deferring all postDecode calls until the whole
+     * object graph is built and then running them through the collector.
+     */
+    @Nullable public Object decode(Object shell, byte[] data, PostDecodeCollector collector) throws Exception {
+        if (active) {
+            return new Bin2Decoder(charstring, limits).decode(shell, data, collector);
+        }
+        Object result;
+        this.collector = collector;
+        try {
+            result = decode(shell, data);
+        } catch (Throwable cause) {
+            // nothing from a partially decoded graph may be post-decoded
+            collector.clear();
+            throw cause;
+        } finally {
+            this.collector = null;
+        }
+        collector.run();
+        return result;
+    }
+
+    /**
+     * Decode one message from the buffer's remaining bytes and advance its position past it.
+     * Heap buffers are read in place; direct buffers are copied once.
+     */
+    @Nullable public Object decode(Object shell, ByteBuffer data) throws Exception {
+        int start = data.position();
+        Object result;
+        if (data.hasArray()) {
+            result = decode(shell, data.array(), data.arrayOffset() + start, data.remaining());
+        } else {
+            byte[] copy = new byte[data.remaining()];
+            data.duplicate().get(copy);
+            result = decode(shell, copy, 0, copy.length);
+        }
+        data.position(start + consumed);
+        return result;
+    }
+
+    /**
+     * Decode one message from the buffer's readable bytes and advance its reader index past it.
+     * Heap buffers are read in place; other buffers are copied once.
+     */
+    @Nullable public Object decode(Object shell, ByteBuf data) throws Exception {
+        int start = data.readerIndex();
+        Object result;
+        if (data.hasArray()) {
+            result = decode(shell, data.array(), data.arrayOffset() + start, data.readableBytes());
+        } else {
+            byte[] copy = new byte[data.readableBytes()];
+            data.getBytes(start, copy, 0, copy.length);
+            result = decode(shell, copy, 0, copy.length);
+        }
+        data.readerIndex(start + consumed);
+        return result;
+    }
+
+    /** Bytes used by the most recent successful decode. */
+    int consumed() {
+        return consumed;
+    }
+
+    /** Decode the first message in a region of an array; see {@link #consumed()} for its size. */
+    @Nullable Object decode(Object shell, byte[] data, int offset, int length) throws Exception {
+        if (active) {
+            Bin2Decoder nested = new Bin2Decoder(charstring, limits);
+            Object result = nested.decode(shell, data, offset, length);
+            consumed = nested.consumed;
+            return result;
+        }
+        active = true;
+        try {
+            if (fieldsGeneration != Fields.generation()) {
+                classInfos.clear();
+                subTypes.clear();
+                layouts.clear();
+                fieldsGeneration = Fields.generation();
+            }
+            // the region may hold more than one message, so only read up to the byte limit
+            int window = Math.min(length, limits.maxBytes());
+            buf.reset(data, offset, window);
+            depth = 0;
+            int ver = buf.readInt();
+            fixedLayout = ver == CodecBin2.FIXED_LAYOUT_CODEC_VERSION;
+            require(fixedLayout || (ver == CodecBin2.CODEC_VERSION),
+                    "version mismatch " + ver + " != " + CodecBin2.CODEC_VERSION);
+            Object result = decodeObject(classInfo(shell.getClass()), shell);
+            consumed = buf.position() - offset;
+            return result;
+        } catch (EOFException ex) {
+            if (length > limits.maxBytes()) {
+                throw new DecodeLimitException(DecodeLimitException.Limit.BYTES, limits.maxBytes(), length);
+            }
+            throw ex;
+        } finally {
+            active = false;
+            buf.reset(null);
+        }
+    }
+
+    private CodableClassInfo classInfo(Class<?> type) {
+        CodableClassInfo classInfo = classInfos.get(type);
+        if (classInfo == null) {
+            classInfo = Fields.getClassFieldMap(type);
+            if (cacheClasses) {
+                classInfos.put(type, classInfo);
+            }
+        }
+        return classInfo;
+    }
+
+    private FixedLayout layout(CodableClassInfo classInfo) {
+        FixedLayout layout = layouts.get(classInfo);
+        if (layout == null) {
+            layout = FixedLayout.of(classInfo);
+            if (cacheClasses) {
+                layouts.put(classInfo, layout);
+            }
+        }
+        return layout;
+    }
+
+    private Class<?> subType(CodableClassInfo classInfo, String stype) throws ClassNotFoundException {
+        if (!cacheClasses) {
+            return classInfo.getClass(stype);
+        }
+        Map<String, Class<?>> byName = subTypes.get(classInfo);
+        if (byName == null) {
+            byName = new HashMap<>();
+            subTypes.put(classInfo, byName);
+        }
+        Class<?> atype = byName.get(stype);
+        if (atype == null) {
+            atype = classInfo.getClass(stype);
+            byName.put(stype, atype);
+        }
+        return atype;
+    }
+
+    @Nullable private Object decodeObject(Class<?> type) throws Exception {
+        log.trace("decodeObject: {} {}", type, buf);
+        if (Fields.isNative(type)) {
+            return decodeNative(type);
+        } else {
+            return decodeObject(classInfo(type), null);
+        }
+    }
+
+    @Nullable private Object decodeObject(CodableClassInfo classInfo, @Nullable Object object) throws Exception {
+        int ck = buf.readByte();
+        if (ck == 0) {
+            return null;
+        }
+        limits.checkDepth(++depth);
+        if (collector != null) {
+            collector.enter();
+        }
+        try {
+            return decodeFields(classInfo, object);
+        } finally {
+            depth--;
+            if (collector != null) {
+                collector.exit();
+            }
+        }
+    }
+
+    private Object decodeFields(CodableClassInfo classInfo, @Nullable Object object) throws Exception {
+        if (log.isTraceEnabled()) {
+            log.trace("decodeObject: {} {} {}", classInfo, object, buf);
+        }
+        Class<?> type = classInfo.getBaseClass();
+        String stype = readStringHelper(buf);
+        if (!Strings.isNullOrEmpty(stype)) {
+            Class<?> atype = subType(classInfo, stype);
+            if (type != atype) {
+                classInfo = classInfo(atype);
+                type = atype;
+            }
+        }
+        if (object == null) {
+            object = type.newInstance();
+        }
+        int fieldCount = classInfo.size();
+        if (fixedLayout && classInfo.isAllPrimitive()) {
+            layout(classInfo).read(object, buf);
+        } else if (classInfo.isAllPrimitive()) {
+            // no containers or nested objects, so skip the per-field type dispatch
+            for (int i = 0; i < fieldCount; i++) {
+                CodableFieldInfo field = classInfo.field(i);
+                if (buf.readByte() != 0) {
+                    field.set(object, decodeNative(field.getTypeOrComponentType()));
+                }
+            }
+        } else {
+            for (int i = 0; i < fieldCount; i++) {
+                CodableFieldInfo field = classInfo.field(i);
+                field.set(object, decodeField(field));
+            }
+        }
+        if (object instanceof SuperCodable) {
+            if (collector != null) {
+                collector.add((SuperCodable) object);
+            } else {
+                ((SuperCodable) object).postDecode();
+            }
+        }
+        return object;
+    }
+
+    @Nullable private Object decodeArray(Class<?> type) throws Exception {
+        log.trace("decodeArray: {} {}", type, buf);
+        int len = buf.readLength(limits, BufferIn.minArrayElementBytes(type));
+        Object value = null;
+        if (len > 0) {
+            value = Array.newInstance(type, len);
+            if ((type == byte.class) || (type == Byte.class)) {
+                buf.readFully((byte[]) value);
+            } else if ((type == int.class) || (type == Integer.class)) {
+                buf.readInts((int[]) value);
+            } else if ((type == long.class) || (type == Long.class)) {
+                buf.readLongs((long[]) value);
+            } else if (type.isEnum()) {
+                for (int i = 0; i < len; i++) {
+                    Array.set(value, i, decodeEnum((Class<Enum>) type));
+                }
+            } else {
+                for (int i = 0; i < len; i++) {
+                    Array.set(value, i, decodeObject(type));
+                }
+            }
+        }
+        return value;
+    }
+
+    private static boolean isNotConcrete(Class<?> type) {
+        int mod = type.getModifiers();
+        return Modifier.isAbstract(mod) || Modifier.isInterface(mod);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> newMap(Class<?> type) throws InstantiationException, IllegalAccessException {
+        return isNotConcrete(type) ? new HashMap<>() : (Map<Object, Object>) type.newInstance();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> newCollection(Class<?> type, int size) throws InstantiationException, IllegalAccessException {
+        return isNotConcrete(type) ? new ArrayList<>(size) : (Collection<Object>) type.newInstance();
+    }
+
+    @Nullable private Object decodeField(CodableFieldInfo field) throws Exception {
+        log.trace("decodeField: {} {}", field, buf);
+        int ck = buf.readByte();
+        if (ck == 0) {
+            return null;
+        }
+        Class<?> type = field.getTypeOrComponentType();
+        if (field.isArray()) {
+            return decodeArray(type);
+        } else if (field.isMap() || field.isCollection()) {
+            return decodeContainerContents(field.getTypeDescriptor());
+        } else if (field.isCodable()) {
+            return decodeObject(type);
+        } else if (field.isEnum()) {
+            return decodeEnum((Class<Enum>) type);
+        } else if (field.isNative()) {
+            return decodeNative(type);
+        } else {
+            log.warn("unhandled decode {}", field);
+            return null;
+        }
+    }
+
+    /** Mirrors Bin2Encoder.encodeElement. */
+    @Nullable private Object decodeElement(TypeDescriptor type) throws Exception {
+        switch (type.getKind()) {
+            case ARRAY:
+                return decodeArray(type.getElementType().getRawType());
+            case COLLECTION:
+            case MAP:
+                if (buf.readByte() == 0) {
+                    return null;
+                }
+                return decodeContainerContents(type);
+            default:
+                return decodeObject(type.getRawType());
+        }
+    }
+
+    private Object decodeContainerContents(TypeDescriptor type) throws Exception {
+        if (type.getKind() == TypeDescriptor.Kind.MAP) {
+            Map<Object, Object> map = newMap(type.getRawType());
+            // every key and value takes at least one byte
+            int elements = buf.readLength(limits, 2);
+            TypeDescriptor keyType = type.getKeyType();
+            TypeDescriptor valueType = type.getElementType();
+            for (int i = 0; i < elements; i++) {
+                Object key = decodeElement(keyType);
+                map.put(key, decodeElement(valueType));
+            }
+            return map;
+        } else {
+            int elements = buf.readLength(limits, 1);
+            Collection<Object> coll = newCollection(type.getRawType(), elements);
+            TypeDescriptor elementType = type.getElementType();
+            for (int i = 0; i < elements; i++) {
+                coll.add(decodeElement(elementType));
+            }
+            return coll;
+        }
+    }
+
+    private Object decodeEnum(Class<Enum> type) throws Exception {
+        String val = readStringHelper(buf);
+        return Enum.valueOf(type, val);
+    }
+
+    @Nullable private Object decodeNative(Class<?> type) throws Exception {
+        Object result = null;
+        if (type == String.class) {
+            result = readStringHelper(buf);
+        } else if ((type == Integer.class) || (type == int.class)) {
+            result = buf.readInt();
+        } else if ((type == Long.class) || (type == long.class)) {
+            result = buf.readLong();
+        } else if ((type == Short.class) || (type == short.class)) {
+            result = buf.readShort();
+        } else if ((type == Boolean.class) || (type == boolean.class)) {
+            result = buf.readByte() != 0;
+        } else if ((type == Double.class) || (type == double.class)) {
+            result = buf.readDouble();
+        } else if ((type == Float.class) || (type == float.class)) {
+            result = buf.readFloat();
+        } else if (type == AtomicLong.class) {
+            result = new AtomicLong(buf.readLong());
+        } else if (type == AtomicInteger.class) {
+            result = new AtomicInteger(buf.readInt());
+        } else if (type == AtomicBoolean.class) {
+            result = new AtomicBoolean(buf.readByte() != 0);
+        } else {
+            log.warn("unhandled native decode {}", type);
+        }
+        return result;
+    }
+
+    private static void require(boolean bool, String msg) throws Exception {
+        if (!bool) {
+            throw new Exception(msg);
+        }
+    }
+
+    @Nullable private String readStringHelper(BufferIn in) throws Exception {
+        // validate the length prefix up front, then let LessBytes read the string as usual
+        int mark = in.position();
+        in.readLength(limits, 1);
+        in.rewind(mark);
+        if (charstring) {
+            return LessBytes.readCharString(in);
+        } else {
+            return LessBytes.readString(in);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import javax.annotation.Nullable;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import java.lang.reflect.Array;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.addthis.basis.util.LessBytes;
+
+import com.addthis.codec.codables.Codable;
+import com.addthis.codec.codables.ConcurrentCodable;
+import com.addthis.codec.codables.SnapshotCodable;
+import com.addthis.codec.codables.SuperCodable;
+import com.addthis.codec.plugins.PluginRegistry;
+import com.addthis.codec.reflection.CodableClassInfo;
+import com.addthis.codec.reflection.CodableFieldInfo;
+import com.addthis.codec.reflection.Fields;
+import com.addthis.codec.reflection.TypeDescriptor;
+
+import io.netty.buffer.ByteBuf;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reusable encoding context for {@link CodecBin2}. Keeps its scratch buffer, class info lookups,
+ * and per-class type names between calls so that steady-state encoding allocates little more
+ * than the returned byte array.
+ *
+ * Instances are not thread safe. Either keep one per thread or use the static methods on
+ * {@link CodecBin2}, which do exactly that. Re-entrant calls (eg. from a preEncode method)
+ * are handled by falling back to a temporary encoder.
+ *
+ * Encoders in fixed layout mode write {@link CodecBin2#FIXED_LAYOUT_CODEC_VERSION} instead, in which
+ * objects of classes with only primitive fields are written as one fixed width block. Only decoders
+ * that know about that version can read the output, so the mode is off unless asked for, either per
+ * encoder or through {@value #FIXED_LAYOUT_PATH}.
+ */
+public final class Bin2Encoder {
+
+    private static final Logger log = LoggerFactory.getLogger(Bin2Encoder.class);
+
+    public static final String FIXED_LAYOUT_PATH = "addthis.codec.bin2.fixed-layout";
+    public static final String LOCK_METRICS_PATH = "addthis.codec.bin2.lock-metrics";
+
+    private final boolean charstring;
+    private final boolean fixedLayout;
+    private final BufferOut buf;
+    private final Map<Class<?>, ClassEntry> classEntries;
+    /** Local lookups are skipped when classes must stay unloadable; see {@link Fields#weakClassKeys()}. */
+    private final boolean cacheClasses;
+
+    private boolean active;
+    private int fieldsGeneration;
+
+    /** Uses fixed layout mode if {@value #FIXED_LAYOUT_PATH} is set. */
+    public Bin2Encoder() {
+        this(fixedLayoutDefault());
+    }
+
+    public Bin2Encoder(boolean fixedLayout) {
+        this(false, fixedLayout);
+    }
+
+    Bin2Encoder(boolean charstring, boolean fixedLayout) {
+        this.charstring = charstring;
+        this.fixedLayout = fixedLayout;
+        this.buf = new BufferOut();
+        this.classEntries = new IdentityHashMap<>();
+        this.cacheClasses = !Fields.weakClassKeys();
+        this.fieldsGeneration = Fields.generation();
+    }
+
+    /** Encode the object, including the version header, into a new byte array. */
+    public byte[] encode(Object object) throws Exception {
+        if (active) {
+            return new Bin2Encoder(charstring, fixedLayout).encode(object);
+        }
+        active = true;
+        try {
+            encodeToBuffer(object, false);
+            return buf.toByteArray();
+        } finally {
+            release();
+        }
+    }
+
+    /** Encode the object, including the version header, onto the end of the buffer. */
+    public void encode(Object object, ByteBuf out) throws Exception {
+        if (active) {
+            new Bin2Encoder(charstring, fixedLayout).encode(object, out);
+            return;
+        }
+        active = true;
+        try {
+            encodeToBuffer(object, false);
+            buf.writeTo(out);
+        } finally {
+            release();
+        }
+    }
+
+    /** Encode the object, including the version header, directly to the output stream. */
+    public void encode(Object object, OutputStream out) throws Exception {
+        if (active) {
+            new Bin2Encoder(charstring, fixedLayout).encode(object, out);
+            return;
+        }
+        active = true;
+        try {
+            encodeToBuffer(object, false);
+            buf.writeTo(out);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Like {@link #encode(Object, ByteBuf)} but preceded by the message's four byte big-endian
+     * length, which is what {@link Bin2FrameDecoder} expects.
+     */
+    public void encodeFrame(Object object, ByteBuf out) throws Exception {
+        if (active) {
+            new Bin2Encoder(charstring, fixedLayout).encodeFrame(object, out);
+            return;
+        }
+        active = true;
+        try {
+            encodeToBuffer(object, true);
+            buf.writeTo(out);
+        } finally {
+            release();
+        }
+    }
+
+    /**
+     * Like {@link #encode(Object, OutputStream)} but preceded by the message's four byte big-endian
+     * length, which is what {@link Bin2FrameDecoder} expects.
+     */
+    public void encodeFrame(Object object, OutputStream out) throws Exception {
+        if (active) {
+            new Bin2Encoder(charstring, fixedLayout).encodeFrame(object, out);
+            return;
+        }
+        active = true;
+        try {
+            encodeToBuffer(object, true);
+            buf.writeTo(out);
+        } finally {
+            release();
+        }
+    }
+
+    private void encodeToBuffer(Object object, boolean framed) throws Exception {
+        if (fieldsGeneration != Fields.generation()) {
+            classEntries.clear();
+            fieldsGeneration = Fields.generation();
+        }
+        buf.reset();
+        int frame = framed ? buf.beginMessage() : -1;
+        buf.writeInt(fixedLayout ? CodecBin2.FIXED_LAYOUT_CODEC_VERSION : CodecBin2.CODEC_VERSION);
+        encodeObject(object);
+        if (framed) {
+            buf.endMessage(frame);
+        }
+    }
+
+    private void release() {
+        active = false;
+        buf.trim();
+    }
+
+    private ClassEntry classEntry(Class<?> objectClass) {
+        ClassEntry entry = classEntries.get(objectClass);
+        if (entry == null) {
+            entry = new ClassEntry(Fields.getClassFieldMap(objectClass), objectClass, fixedLayout);
+            if (cacheClasses) {
+                classEntries.put(objectClass, entry);
+            }
+        }
+        return entry;
+    }
+
+    private void encodeObject(Object object) throws Exception {
+        log.trace("encodeObject: {} {}", object, buf);
+        if (object == null) {
+            buf.write(0);
+            return;
+        }
+        if (object instanceof SnapshotCodable) {
+            Object snapshot = ((SnapshotCodable) object).encodeSnapshot();
+            if (snapshot == null) {
+                buf.write(0);
+                return;
+            }
+            if (snapshot.getClass() != object.getClass()) {
+                throw new IllegalStateException("snapshot of " + object.getClass() + " is a " + snapshot.getClass());
+            }
+            encodeUnlocked(snapshot);
+        } else if (object instanceof ConcurrentCodable) {
+            encodeLocked((ConcurrentCodable) object);
+        } else {
+            encodeUnlocked(object);
+        }
+    }
+
+    private void encodeLocked(ConcurrentCodable object) throws Exception {
+        if (!LockTimers.ENABLED) {
+            object.encodeLock();
+            try {
+                encodeUnlocked(object);
+            } finally {
+                object.encodeUnlock();
+            }
+            return;
+        }
+        LockTimers timers = LockTimers.forClass(object.getClass());
+        long start = System.nanoTime();
+        object.encodeLock();
+        long locked = System.nanoTime();
+        timers.waitTimer.update(locked - start, TimeUnit.NANOSECONDS);
+        try {
+            encodeUnlocked(object);
+        } finally {
+            object.encodeUnlock();
+            timers.holdTimer.update(System.nanoTime() - locked, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void encodeUnlocked(Object object) throws Exception {
+        if (object instanceof SuperCodable) {
+            ((SuperCodable) object).preEncode();
+        }
+        Class<?> objectClass = object.getClass();
+        ClassEntry entry = classEntry(objectClass);
+        CodableClassInfo classInfo = entry.classInfo;
+        if (objectClass.isArray()) {
+            encodeArray(object, objectClass);
+        } else if ((classInfo.size() == 0) && !(object instanceof Codable)) {
+            encodeNative(object);
+        } else {
+            int fieldCount = classInfo.size();
+            buf.write(1);
+            writeStringHelper(entry.className, buf);
+            if (entry.layout != null) {
+                entry.layout.write(object, buf);
+            } else if (classInfo.isAllPrimitive()) {
+                // values are never null, so each is a presence byte and its fixed width value
+                buf.ensureCapacity(fieldCount + classInfo.primitiveByteWidth());
+                for (int i = 0; i < fieldCount; i++) {
+                    buf.write(1);
+                    encodeNative(classInfo.field(i).get(object));
+                }
+            } else {
+                // every field takes at least its presence byte
+                buf.ensureCapacity(fieldCount);
+                for (int i = 0; i < fieldCount; i++) {
+                    CodableFieldInfo field = classInfo.field(i);
+                    encodeField(field.get(object), field);
+                }
+            }
+        }
+    }
+
+    private void encodeArray(Object value, Class<?> type) throws Exception {
+        int len = Array.getLength(value);
+        if (log.isTraceEnabled()) {
+            log.trace("encodeArray: {} {} {} len={}", value, type, buf, len);
+        }
+        LessBytes.writeLength(len, buf);
+        if ((type == byte.class) || (type == Byte.class)) {
+            buf.write((byte[]) value);
+        } else if ((type == int.class) || (type == Integer.class)) {
+            buf.writeInts((int[]) value);
+        } else if ((type == long.class) || (type == Long.class)) {
+            buf.writeLongs((long[]) value);
+        } else if (type.isEnum()) {
+            for (int i = 0; i < len; i++) {
+                encodeNative(Array.get(value, i).toString());
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                encodeObject(Array.get(value, i));
+            }
+        }
+    }
+
+    private void encodeField(Object value, CodableFieldInfo field) throws Exception {
+        log.trace("encodeField: {} {}", value, field);
+        if (value != null) {
+            try {
+                buf.write(1);
+                if (field.isArray()) {
+                    encodeArray(value, field.getTypeOrComponentType());
+                } else if (field.isNative()) {
+                    encodeNative(value);
+                } else if (field.isMap() || field.isCollection()) {
+                    encodeContainerContents(value, field.getTypeDescriptor());
+                } else if (field.isCodable()) {
+                    encodeObject(value);
+                } else if (field.isEnum()) {
+                    encodeNative(value.toString());
+                } else {
+                    log.warn("[encodeField] unhandled field : {} {}", value, field);
+                }
+            } catch (Exception ex) {
+                log.warn("failed encoding {} class {} type {}", value, value.getClass(), field, ex);
+                StringWriter sw = new StringWriter();
+                PrintWriter pw = new PrintWriter(sw);
+                ex.printStackTrace(pw);
+                log.warn(sw.toString());
+                throw ex;
+            }
+        } else {
+            buf.write(0);
+        }
+    }
+
+    /**
+     * Writes map and collection elements. Nested maps and collections are written the same way as map and
+     * collection fields (presence byte, length, elements); anything else exactly as it always has been.
+     */
+    private void encodeElement(Object value, TypeDescriptor type) throws Exception {
+        if (type.isContainer()) {
+            if (value == null) {
+                buf.write(0);
+            } else {
+                buf.write(1);
+                encodeContainerContents(value, type);
+            }
+        } else {
+            encodeObject(value);
+        }
+    }
+
+    private void encodeContainerContents(Object value, TypeDescriptor type) throws Exception {
+        if (type.getKind() == TypeDescriptor.Kind.MAP) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            LessBytes.writeLength(map.size(), buf);
+            for (Entry<?, ?> entry : map.entrySet()) {
+                encodeElement(entry.getKey(), type.getKeyType());
+                encodeElement(entry.getValue(), type.getElementType());
+            }
+        } else {
+            Collection<?> coll = (Collection<?>) value;
+            LessBytes.writeLength(coll.size(), buf);
+            for (Object aColl : coll) {
+                encodeElement(aColl, type.getElementType());
+            }
+        }
+    }
+
+    private void encodeNative(Object value) throws Exception {
+        log.trace("encodeNative: {} {}", value, buf);
+        Class<?> type = value.getClass();
+        if (type == String.class) {
+            writeStringHelper(value.toString(), buf);
+        } else if ((type == Integer.class) || (type == int.class)) {
+            buf.writeInt((Integer) value);
+        } else if ((type == Long.class) || (type == long.class)) {
+            buf.writeLong((Long) value);
+        } else if ((type == Short.class) || (type == short.class)) {
+            buf.writeShort((Short) value);
+        } else if ((type == Boolean.class) || (type == boolean.class)) {
+            buf.write((Boolean) value ? 1 : 0);
+        } else if ((type == Float.class) || (type == float.class)) {
+            buf.writeFloat((Float) value);
+        } else if ((type == Double.class) || (type == double.class)) {
+            buf.writeDouble((Double) value);
+        } else if (type == AtomicLong.class) {
+            buf.writeLong(((AtomicLong) value).get());
+        } else if (type == AtomicInteger.class) {
+            buf.writeInt(((AtomicInteger) value).get());
+        } else if (type == AtomicBoolean.class) {
+            buf.write(((AtomicBoolean) value).get() ? 1 : 0);
+        } else {
+            log.warn("skip native encode for {} / {}", value, value.getClass());
+        }
+    }
+
+    private void writeStringHelper(String str, OutputStream out) throws Exception {
+        if (charstring) {
+            LessBytes.writeCharString(str, out);
+        } else {
+            LessBytes.writeString(str, out);
+        }
+    }
+
+    static boolean fixedLayoutDefault() {
+        return Defaults.FIXED_LAYOUT;
+    }
+
+    /** Lazily read so that constructing encoders explicitly does not force the global config to load. */
+    private static final class Defaults {
+        static final boolean FIXED_LAYOUT = PluginRegistry.defaultRegistry().config().getBoolean(FIXED_LAYOUT_PATH);
+    }
+
+    /** Class info, the type name, and any fixed layout used for instances of one concrete class. */
+    private static final class ClassEntry {
+        final CodableClassInfo classInfo;
+        final String className;
+        @Nullable final FixedLayout layout;
+
+        ClassEntry(CodableClassInfo classInfo, Class<?> objectClass, boolean fixedLayout) {
+            this.classInfo = classInfo;
+            this.layout = fixedLayout ? FixedLayout.of(classInfo) : null;
+            if (objectClass != classInfo.getBaseClass()) {
+                this.className = classInfo.getPluginMap().getClassName(objectClass);
+            } else {
+                this.className = null;
+            }
+        }
+    }
+}
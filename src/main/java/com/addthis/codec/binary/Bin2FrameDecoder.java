@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.IOException;
+
+import java.util.List;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Length-field frame helper for a stream of length-prefixed Bin2 messages (eg. the output of
+ * repeated {@link CodecBin2#encodeFrame(Object, java.io.OutputStream)} calls) that arrive in
+ * arbitrary chunks. Each frame is a four byte big-endian length followed by a complete Bin2
+ * message. Plain, unframed Bin2 streams cannot be read with it.
+ *
+ * This is not an incremental decoder: the bytes of each frame are accumulated until the whole
+ * frame is available and only then handed to {@link Bin2Decoder} in one go. Decoding latency is
+ * therefore still bound to receiving whole messages; what this saves callers is the framing and
+ * accumulation code, not the buffering.
+ *
+ * {@link #decode(ByteBuf, List)} has the same contract as netty's ByteToMessageDecoder: it reads
+ * as many complete frames as are readable, leaves the reader index at the start of any partial
+ * frame, and relies on the caller to accumulate chunks. It can be called directly from a netty
+ * decoder subclass. {@link #feed(ByteBuf, List)} does the accumulation itself for callers outside
+ * of a netty pipeline.
+ *
+ * Every message is decoded exactly once, so postDecode calls only ever run for messages that are
+ * returned. A frame whose length is over {@link Bin2Limits#maxBytes()} fails with a
+ * {@link DecodeLimitException} as soon as its length is read, before any of its body is buffered.
+ * Instances are not thread safe.
+ */
+public final class Bin2FrameDecoder {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Class<?> type;
+    private final Bin2Limits limits;
+    private final Bin2Decoder decoder;
+
+    private byte[] pending = EMPTY;
+    private int pendingStart;
+    private int pendingEnd;
+
+    public Bin2FrameDecoder(Class<?> type) {
+        this(type, Bin2Limits.DEFAULT);
+    }
+
+    public Bin2FrameDecoder(Class<?> type, Bin2Limits limits) {
+        this.type = type;
+        this.limits = limits;
+        this.decoder = new Bin2Decoder(limits);
+    }
+
+    /**
+     * Decode every complete frame readable from in, adding them to out and advancing the reader
+     * index past them. A trailing partial frame is left unread.
+     */
+    public void decode(ByteBuf in, List<Object> out) throws Exception {
+        while (in.readableBytes() >= BufferOut.MESSAGE_HEADER_BYTES) {
+            int start = in.readerIndex();
+            int length = frameLength(in.getInt(start));
+            if (in.readableBytes() < (BufferOut.MESSAGE_HEADER_BYTES + length)) {
+                return;
+            }
+            out.add(decodeFrame(in.slice(start + BufferOut.MESSAGE_HEADER_BYTES, length), length));
+            in.skipBytes(BufferOut.MESSAGE_HEADER_BYTES + length);
+        }
+    }
+
+    /**
+     * Append a chunk to the internal buffer and decode every frame it completes. The chunk's
+     * readable bytes are always fully consumed.
+     */
+    public void feed(ByteBuf chunk, List<Object> out) throws Exception {
+        int length = chunk.readableBytes();
+        ensurePending(length);
+        chunk.readBytes(pending, pendingEnd, length);
+        pendingEnd += length;
+        drainPending(out);
+    }
+
+    /** Append a region of an array to the internal buffer and decode every frame it completes. */
+    public void feed(byte[] chunk, int offset, int length, List<Object> out) throws Exception {
+        ensurePending(length);
+        System.arraycopy(chunk, offset, pending, pendingEnd, length);
+        pendingEnd += length;
+        drainPending(out);
+    }
+
+    /** Number of bytes held from incomplete frames passed to {@link #feed}. */
+    public int pendingBytes() {
+        return pendingEnd - pendingStart;
+    }
+
+    /** Drop any buffered partial frame, eg. after a decode failure or when a connection resets. */
+    public void reset() {
+        pending = EMPTY;
+        pendingStart = 0;
+        pendingEnd = 0;
+    }
+
+    private void drainPending(List<Object> out) throws Exception {
+        while ((pendingEnd - pendingStart) >= BufferOut.MESSAGE_HEADER_BYTES) {
+            int length = frameLength(((pending[pendingStart] & 0xff) << 24)
+                                     | ((pending[pendingStart + 1] & 0xff) << 16)
+                                     | ((pending[pendingStart + 2] & 0xff) << 8)
+                                     | (pending[pendingStart + 3] & 0xff));
+            if ((pendingEnd - pendingStart) < (BufferOut.MESSAGE_HEADER_BYTES + length)) {
+                break;
+            }
+            int body = pendingStart + BufferOut.MESSAGE_HEADER_BYTES;
+            Object message = decoder.decode(type.newInstance(), pending, body, length);
+            checkConsumed(length);
+            out.add(message);
+            pendingStart = body + length;
+        }
+        if (pendingStart == pendingEnd) {
+            pendingStart = 0;
+            pendingEnd = 0;
+        }
+    }
+
+    private Object decodeFrame(ByteBuf frame, int length) throws Exception {
+        Object message = decoder.decode(type.newInstance(), frame);
+        checkConsumed(length);
+        return message;
+    }
+
+    private int frameLength(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("corrupt frame length " + length);
+        }
+        limits.checkBytes(length);
+        return length;
+    }
+
+    private void checkConsumed(int length) throws IOException {
+        if (decoder.consumed() != length) {
+            throw new IOException("frame of " + length + " bytes held a message of " + decoder.consumed());
+        }
+    }
+
+    private void ensurePending(int extra) {
+        int held = pendingEnd - pendingStart;
+        if ((pendingEnd + extra) <= pending.length) {
+            return;
+        }
+        if ((held + extra) <= pending.length) {
+            // compact in place
+            System.arraycopy(pending, pendingStart, pending, 0, held);
+        } else {
+            byte[] grown = new byte[Math.max(held + extra, pending.length << 1)];
+            System.arraycopy(pending, pendingStart, grown, 0, held);
+            pending = grown;
+        }
+        pendingStart = 0;
+        pendingEnd = held;
+    }
+
+    @Override
+    public String toString() {
+        return "Bin2FrameDecoder:" + type.getName() + ":" + pendingBytes();
+    }
+}
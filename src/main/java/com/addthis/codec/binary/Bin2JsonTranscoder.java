@@ -0,0 +1,328 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.addthis.basis.util.LessBytes;
+
+import com.addthis.codec.reflection.CodableClassInfo;
+import com.addthis.codec.reflection.CodableFieldInfo;
+import com.addthis.codec.reflection.Fields;
+import com.addthis.codec.reflection.TypeDescriptor;
+
+import com.google.common.base.Strings;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Converts Bin2 encoded data straight to JSON tokens using the {@link CodableClassInfo} of the
+ * expected type, without building the intermediate object graph. The output matches what
+ * encoding the decoded object as JSON would produce: null fields are omitted and plugin
+ * subtypes are tagged with their type name under the plugin category's class field.
+ *
+ * Constructors are never run and postDecode hooks are not called, so objects whose JSON depends
+ * on those hooks may differ. Instances are not thread safe.
+ */
+public final class Bin2JsonTranscoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final Bin2Limits limits;
+    private final BufferIn buf;
+    private int depth;
+    private boolean fixedLayout;
+
+    public Bin2JsonTranscoder() {
+        this(Bin2Limits.DEFAULT);
+    }
+
+    public Bin2JsonTranscoder(Bin2Limits limits) {
+        this.limits = limits;
+        this.buf = new BufferIn();
+    }
+
+    /** Write the Bin2 encoded instance of type, including the version header, to the generator. */
+    public void transcode(Class<?> type, byte[] data, JsonGenerator gen) throws IOException {
+        limits.checkBytes(data.length);
+        buf.reset(data);
+        depth = 0;
+        try {
+            int ver = buf.readInt();
+            fixedLayout = ver == CodecBin2.FIXED_LAYOUT_CODEC_VERSION;
+            if (!fixedLayout && (ver != CodecBin2.CODEC_VERSION)) {
+                throw new IOException("version mismatch " + ver + " != " + CodecBin2.CODEC_VERSION);
+            }
+            writeObject(Fields.getClassFieldMap(type), gen);
+        } catch (ClassNotFoundException ex) {
+            throw new IOException(ex);
+        } finally {
+            buf.reset(null);
+        }
+    }
+
+    /** Convenience method that returns the transcoded JSON as a string. */
+    public String toJson(Class<?> type, byte[] data) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(writer)) {
+            transcode(type, data, gen);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Expose Bin2 encoded data as a {@link JsonParser} so that it can be read by any Jackson
+     * consumer, eg. {@code mapper.readTree(transcoder.asParser(type, data, mapper))}.
+     *
+     * The whole payload is transcoded into a {@link TokenBuffer} before the parser is returned, so
+     * every token of the document is held in memory at once. Bulk exports should write to their
+     * output with {@link #transcode(Class, byte[], JsonGenerator)} instead, which never buffers.
+     */
+    public JsonParser asParser(Class<?> type, byte[] data, ObjectCodec codec) throws IOException {
+        TokenBuffer tokens = new TokenBuffer(codec, false);
+        transcode(type, data, tokens);
+        return tokens.asParser(codec);
+    }
+
+    private void writeObject(CodableClassInfo classInfo, JsonGenerator gen) throws IOException, ClassNotFoundException {
+        if (buf.readByte() == 0) {
+            gen.writeNull();
+            return;
+        }
+        limits.checkDepth(++depth);
+        String classField = classInfo.getClassField();
+        String stype = readString();
+        boolean typed = !Strings.isNullOrEmpty(stype);
+        if (typed) {
+            Class<?> atype = classInfo.getClass(stype);
+            if (atype != classInfo.getBaseClass()) {
+                classInfo = Fields.getClassFieldMap(atype);
+            }
+        }
+        gen.writeStartObject();
+        if (typed) {
+            gen.writeStringField(classField, stype);
+        }
+        if (fixedLayout && classInfo.isAllPrimitive()) {
+            for (int i = 0, n = classInfo.size(); i < n; i++) {
+                CodableFieldInfo field = classInfo.field(i);
+                gen.writeFieldName(field.getName());
+                writeFixed(field.getTypeOrComponentType(), gen);
+            }
+        } else {
+            for (int i = 0, n = classInfo.size(); i < n; i++) {
+                writeField(classInfo.field(i), gen);
+            }
+        }
+        gen.writeEndObject();
+        depth--;
+    }
+
+    private void writeFixed(Class<?> type, JsonGenerator gen) throws IOException {
+        Object value = FixedLayout.readValue(type, buf);
+        if (value instanceof Boolean) {
+            gen.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            gen.writeString(value.toString());
+        } else if (value instanceof Float) {
+            gen.writeNumber((Float) value);
+        } else if (value instanceof Double) {
+            gen.writeNumber((Double) value);
+        } else {
+            gen.writeNumber(((Number) value).longValue());
+        }
+    }
+
+    private void writeValue(Class<?> type, JsonGenerator gen) throws IOException, ClassNotFoundException {
+        if (Fields.isNative(type)) {
+            writeNative(type, gen);
+        } else {
+            writeObject(Fields.getClassFieldMap(type), gen);
+        }
+    }
+
+    private void writeField(CodableFieldInfo field, JsonGenerator gen) throws IOException, ClassNotFoundException {
+        if (buf.readByte() == 0) {
+            return;
+        }
+        Class<?> type = field.getTypeOrComponentType();
+        if (field.isArray()) {
+            // empty arrays decode as null, and so are omitted
+            int len = buf.readLength(limits, BufferIn.minArrayElementBytes(type));
+            if (len > 0) {
+                gen.writeFieldName(field.getName());
+                writeArrayElements(type, len, gen);
+            }
+        } else if (field.isMap() || field.isCollection()) {
+            gen.writeFieldName(field.getName());
+            writeContainerContents(field.getTypeDescriptor(), field.getName(), gen);
+        } else if (field.isCodable()) {
+            gen.writeFieldName(field.getName());
+            writeValue(type, gen);
+        } else if (field.isEnum()) {
+            gen.writeFieldName(field.getName());
+            gen.writeString(readString());
+        } else if (field.isNative()) {
+            gen.writeFieldName(field.getName());
+            writeNative(type, gen);
+        } else {
+            throw new IOException("unhandled field type for " + field.getName());
+        }
+    }
+
+    private void writeElement(TypeDescriptor type, String name, JsonGenerator gen)
+            throws IOException, ClassNotFoundException {
+        switch (type.getKind()) {
+            case ARRAY:
+                writeArray(type.getElementType().getRawType(), gen);
+                break;
+            case COLLECTION:
+            case MAP:
+                if (buf.readByte() == 0) {
+                    gen.writeNull();
+                } else {
+                    writeContainerContents(type, name, gen);
+                }
+                break;
+            default:
+                writeValue(type.getRawType(), gen);
+        }
+    }
+
+    private void writeContainerContents(TypeDescriptor type, String name, JsonGenerator gen)
+            throws IOException, ClassNotFoundException {
+        if (type.getKind() == TypeDescriptor.Kind.MAP) {
+            int elements = buf.readLength(limits, 2);
+            TypeDescriptor keyType = type.getKeyType();
+            Class<?> kc = keyType.getRawType();
+            if ((keyType.getKind() != TypeDescriptor.Kind.VALUE) || !Fields.isNative(kc)) {
+                throw new IOException("cannot transcode non-scalar map keys of " + keyType + " for " + name);
+            }
+            gen.writeStartObject();
+            for (int i = 0; i < elements; i++) {
+                gen.writeFieldName(String.valueOf(readNative(kc)));
+                writeElement(type.getElementType(), name, gen);
+            }
+            gen.writeEndObject();
+        } else {
+            int elements = buf.readLength(limits, 1);
+            gen.writeStartArray();
+            for (int i = 0; i < elements; i++) {
+                writeElement(type.getElementType(), name, gen);
+            }
+            gen.writeEndArray();
+        }
+    }
+
+    private void writeArray(Class<?> type, JsonGenerator gen) throws IOException, ClassNotFoundException {
+        int len = buf.readLength(limits, BufferIn.minArrayElementBytes(type));
+        if (len > 0) {
+            writeArrayElements(type, len, gen);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    private void writeArrayElements(Class<?> type, int len, JsonGenerator gen) throws IOException, ClassNotFoundException {
+        if ((type == byte.class) || (type == Byte.class)) {
+            byte[] bytes = new byte[len];
+            buf.readFully(bytes);
+            gen.writeBinary(bytes);
+            return;
+        }
+        gen.writeStartArray();
+        if ((type == int.class) || (type == Integer.class)) {
+            for (int i = 0; i < len; i++) {
+                gen.writeNumber(buf.readInt());
+            }
+        } else if ((type == long.class) || (type == Long.class)) {
+            for (int i = 0; i < len; i++) {
+                gen.writeNumber(buf.readLong());
+            }
+        } else if (type.isEnum()) {
+            for (int i = 0; i < len; i++) {
+                gen.writeString(readString());
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                writeValue(type, gen);
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeNative(Class<?> type, JsonGenerator gen) throws IOException {
+        if (type == String.class) {
+            gen.writeString(readString());
+        } else if ((type == Integer.class) || (type == int.class)) {
+            gen.writeNumber(buf.readInt());
+        } else if ((type == Long.class) || (type == long.class)) {
+            gen.writeNumber(buf.readLong());
+        } else if ((type == Short.class) || (type == short.class)) {
+            gen.writeNumber(buf.readShort());
+        } else if ((type == Boolean.class) || (type == boolean.class) || (type == AtomicBoolean.class)) {
+            gen.writeBoolean(buf.readByte() != 0);
+        } else if ((type == Double.class) || (type == double.class)) {
+            gen.writeNumber(buf.readDouble());
+        } else if ((type == Float.class) || (type == float.class)) {
+            gen.writeNumber(buf.readFloat());
+        } else if (type == AtomicLong.class) {
+            gen.writeNumber(buf.readLong());
+        } else if (type == AtomicInteger.class) {
+            gen.writeNumber(buf.readInt());
+        } else {
+            throw new IOException("unhandled native type " + type);
+        }
+    }
+
+    /** Read a scalar for use as a map key. */
+    private Object readNative(Class<?> type) throws IOException {
+        if (type == String.class) {
+            return readString();
+        } else if ((type == Integer.class) || (type == int.class) ||
+                   (type == AtomicInteger.class)) {
+            return buf.readInt();
+        } else if ((type == Long.class) || (type == long.class) ||
+                   (type == AtomicLong.class)) {
+            return buf.readLong();
+        } else if ((type == Short.class) || (type == short.class)) {
+            return buf.readShort();
+        } else if ((type == Boolean.class) || (type == boolean.class) ||
+                   (type == AtomicBoolean.class)) {
+            return buf.readByte() != 0;
+        } else if ((type == Double.class) || (type == double.class)) {
+            return buf.readDouble();
+        } else if ((type == Float.class) || (type == float.class)) {
+            return buf.readFloat();
+        } else {
+            throw new IOException("unhandled native type " + type);
+        }
+    }
+
+    private String readString() throws IOException {
+        int mark = buf.position();
+        buf.readLength(limits, 1);
+        buf.rewind(mark);
+        return LessBytes.readString(buf);
+    }
+}
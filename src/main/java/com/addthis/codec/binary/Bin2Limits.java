@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import com.addthis.codec.binary.DecodeLimitException.Limit;
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.google.common.base.MoreObjects;
+import com.typesafe.config.Config;
+
+/**
+ * Immutable bounds applied by {@link Bin2Decoder}. Independently of these, every length prefix is
+ * checked against the remaining input before anything is allocated, so truncated or corrupt data
+ * fails with an EOFException rather than a huge allocation.
+ *
+ * The defaults come from {@code addthis.codec.bin2} in the global config.
+ */
+public final class Bin2Limits {
+
+    public static final Bin2Limits UNLIMITED =
+            new Bin2Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    public static final Bin2Limits DEFAULT =
+            fromConfig(PluginRegistry.defaultRegistry().config().getConfig("addthis.codec.bin2"));
+
+    private final int maxBytes;
+    private final int maxCollectionLength;
+    private final int maxDepth;
+
+    private Bin2Limits(int maxBytes, int maxCollectionLength, int maxDepth) {
+        this.maxBytes = checkPositive(maxBytes, "maxBytes");
+        this.maxCollectionLength = checkPositive(maxCollectionLength, "maxCollectionLength");
+        this.maxDepth = checkPositive(maxDepth, "maxDepth");
+    }
+
+    /** Read {@code max-bytes}, {@code max-collection-length}, and {@code max-depth} from config. */
+    public static Bin2Limits fromConfig(Config config) {
+        return new Bin2Limits(config.getInt("max-bytes"),
+                              config.getInt("max-collection-length"),
+                              config.getInt("max-depth"));
+    }
+
+    /** Largest encoded message, including the version header, that will be decoded. */
+    public int maxBytes() {
+        return maxBytes;
+    }
+
+    /** Largest element count accepted for any array, collection, map, or string. */
+    public int maxCollectionLength() {
+        return maxCollectionLength;
+    }
+
+    /** Deepest nesting of objects accepted. */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    public Bin2Limits withMaxBytes(int maxBytes) {
+        return new Bin2Limits(maxBytes, maxCollectionLength, maxDepth);
+    }
+
+    public Bin2Limits withMaxCollectionLength(int maxCollectionLength) {
+        return new Bin2Limits(maxBytes, maxCollectionLength, maxDepth);
+    }
+
+    public Bin2Limits withMaxDepth(int maxDepth) {
+        return new Bin2Limits(maxBytes, maxCollectionLength, maxDepth);
+    }
+
+    void checkBytes(int bytes) {
+        if (bytes > maxBytes) {
+            throw new DecodeLimitException(Limit.BYTES, maxBytes, bytes);
+        }
+    }
+
+    void checkCollectionLength(long length) {
+        if (length > maxCollectionLength) {
+            throw new DecodeLimitException(Limit.COLLECTION_LENGTH, maxCollectionLength, length);
+        }
+    }
+
+    void checkDepth(int depth) {
+        if (depth > maxDepth) {
+            throw new DecodeLimitException(Limit.DEPTH, maxDepth, depth);
+        }
+    }
+
+    private static int checkPositive(int value, String name) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive but was " + value);
+        }
+        return value;
+    }
+
+    @Override public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("maxBytes", maxBytes)
+                          .add("maxCollectionLength", maxCollectionLength)
+                          .add("maxDepth", maxDepth)
+                          .toString();
+    }
+}
@@ -13,36 +13,248 @@
  */
 package com.addthis.codec.binary;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import javax.annotation.Nullable;
 
-import java.util.Stack;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 
 import com.addthis.basis.util.LessBytes;
 
-final class BufferIn {
+/**
+ * Byte array input used by {@link Bin2Decoder}. Unsynchronized, reads fixed width big-endian
+ * primitives directly from the array with explicit underflow checks, and reads nested messages
+ * written by {@link BufferOut#beginMessage()} in place by narrowing the readable limit rather
+ * than copying the message body out.
+ */
+final class BufferIn extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] data;
+    private int pos;
+    private int limit;
+
+    BufferIn() {
+        this.data = EMPTY;
+    }
+
+    BufferIn(final byte[] data) {
+        reset(data);
+    }
+
+    /** Point this buffer at new data, or release the previous data when passed null. */
+    public void reset(@Nullable byte[] data) {
+        if (data == null) {
+            reset(EMPTY, 0, 0);
+        } else {
+            reset(data, 0, data.length);
+        }
+    }
+
+    /** Point this buffer at a region of an array, eg. the backing array of a heap buffer. */
+    public void reset(byte[] data, int offset, int length) {
+        if ((offset < 0) || (length < 0) || (offset > (data.length - length))) {
+            throw new IndexOutOfBoundsException("offset " + offset + " length " + length + " array " + data.length);
+        }
+        this.data = data;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    /** Absolute read position in the current array. */
+    public int position() {
+        return pos;
+    }
+
+    /** Move back to a position previously returned by {@link #position()}. */
+    void rewind(int position) {
+        if ((position < 0) || (position > pos)) {
+            throw new IllegalArgumentException("cannot rewind to " + position + " from " + pos);
+        }
+        pos = position;
+    }
+
+    public byte readByte() throws EOFException {
+        require(1);
+        return data[pos++];
+    }
+
+    public short readShort() throws EOFException {
+        require(2);
+        short v = Bin2Bytes.getShort(data, pos);
+        pos += 2;
+        return v;
+    }
+
+    public int readInt() throws EOFException {
+        require(4);
+        int v = Bin2Bytes.getInt(data, pos);
+        pos += 4;
+        return v;
+    }
+
+    public long readLong() throws EOFException {
+        require(8);
+        long v = Bin2Bytes.getLong(data, pos);
+        pos += 8;
+        return v;
+    }
+
+    public float readFloat() throws EOFException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws EOFException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /** Fill the array with a single bounds check. */
+    public void readInts(int[] values) throws EOFException {
+        int len = values.length;
+        require(len * 4L);
+        int off = pos;
+        for (int i = 0; i < len; i++) {
+            values[i] = Bin2Bytes.getInt(data, off);
+            off += 4;
+        }
+        pos = off;
+    }
+
+    /** Fill the array with a single bounds check. */
+    public void readLongs(long[] values) throws EOFException {
+        int len = values.length;
+        require(len * 8L);
+        int off = pos;
+        for (int i = 0; i < len; i++) {
+            values[i] = Bin2Bytes.getLong(data, off);
+            off += 8;
+        }
+        pos = off;
+    }
+
+    /** Fill the array completely or throw if there are not enough bytes. */
+    public void readFully(byte[] values) throws EOFException {
+        require(values.length);
+        System.arraycopy(data, pos, values, 0, values.length);
+        pos += values.length;
+    }
+
+    /**
+     * Read a length prefix and reject it before anything is allocated if it exceeds the collection
+     * limit or if the remaining input cannot possibly hold that many elements.
+     */
+    int readLength(Bin2Limits limits, int minElementBytes) throws IOException {
+        requireVarint();
+        long len = LessBytes.readLength(this);
+        if (len < 0) {
+            throw new IOException("invalid length prefix " + len);
+        }
+        limits.checkCollectionLength(len);
+        require(len * minElementBytes);
+        return (int) len;
+    }
+
+    /** Smallest number of bytes one element of an array of this type can be encoded in. */
+    static int minArrayElementBytes(Class<?> type) {
+        if ((type == long.class) || (type == Long.class)) {
+            return 8;
+        } else if ((type == int.class) || (type == Integer.class)) {
+            return 4;
+        } else {
+            return 1;
+        }
+    }
+
+    /**
+     * Throw EOFException unless a complete varint (a byte without the continuation bit) is
+     * available, so that a length prefix split across the end of input is reported as truncation.
+     */
+    private void requireVarint() throws EOFException {
+        for (int i = pos; i < limit; i++) {
+            if ((data[i] & 0x80) == 0) {
+                return;
+            }
+        }
+        throw new EOFException("truncated length prefix");
+    }
+
+    /** Throw unless at least n more bytes can be read. */
+    void require(long n) throws EOFException {
+        if (n > (limit - pos)) {
+            throw new EOFException("need " + n + " bytes but only " + (limit - pos) + " remain");
+        }
+    }
+
+    @Override
+    public int read() {
+        return (pos < limit) ? (data[pos++] & 0xff) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int avail = limit - pos;
+        if (avail <= 0) {
+            return -1;
+        }
+        int n = Math.min(len, avail);
+        System.arraycopy(data, pos, b, off, n);
+        pos += n;
+        return n;
+    }
 
-    ByteArrayInputStream        in;
-    Stack<ByteArrayInputStream> stack;
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, limit - pos));
+        pos += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return limit - pos;
+    }
+
+    /**
+     * Enter a nested message written by {@link BufferOut#beginMessage()}. Reads are confined to
+     * the message body until {@link #endMessage(int)} is called with the returned value.
+     */
+    public int beginMessage() throws IOException {
+        int length = readMessageLength();
+        int outer = limit;
+        limit = pos + length;
+        return outer;
+    }
 
-    BufferIn(final byte[] data) throws IOException {
-        stack = new Stack<>();
-        in = new ByteArrayInputStream(data);
+    /** Leave the current nested message, skipping any part of its body that was not read. */
+    public void endMessage(int outerLimit) {
+        pos = limit;
+        limit = outerLimit;
     }
 
-    public void push() throws IOException {
-        int len = (int) LessBytes.readLength(in);
-        byte[] ndat = LessBytes.readBytes(in, len);
-        stack.push(in);
-        in = new ByteArrayInputStream(ndat);
+    /** Skip over a nested message without decoding it. */
+    public void skipMessage() throws IOException {
+        int length = readMessageLength();
+        pos += length;
     }
 
-    public void pop() {
-        in = stack.pop();
+    private int readMessageLength() throws IOException {
+        if ((limit - pos) < BufferOut.MESSAGE_HEADER_BYTES) {
+            throw new EOFException("truncated message header");
+        }
+        int length = Bin2Bytes.getInt(data, pos);
+        pos += BufferOut.MESSAGE_HEADER_BYTES;
+        if ((length < 0) || (length > (limit - pos))) {
+            throw new EOFException("message length " + length + " exceeds remaining " + (limit - pos));
+        }
+        return length;
     }
 
     @Override
     public String toString() {
-        return "BufferIn:" + (in != null ? in.available() : -1);
+        return "BufferIn:" + (limit - pos);
     }
 }
@@ -13,42 +13,173 @@
  */
 package com.addthis.codec.binary;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 
-import java.util.Stack;
+import java.util.Arrays;
 
-import com.addthis.basis.util.LessBytes;
+import io.netty.buffer.ByteBuf;
 
-final class BufferOut {
+/**
+ * Growable byte array output used by {@link Bin2Encoder}. Unlike ByteArrayOutputStream it is
+ * unsynchronized and writes fixed width big-endian primitives directly into the array.
+ *
+ * It also supports length-prefixed nested messages: {@link #beginMessage()} reserves a fixed four
+ * byte big-endian length slot and {@link #endMessage(int)} back-patches it once the message body
+ * has been written, so nothing is ever copied into a parent buffer.
+ */
+final class BufferOut extends OutputStream {
+
+    /** Buffers that grew beyond this are dropped instead of being kept for reuse. */
+    private static final int MAX_RETAINED_BYTES = 64 * 1024;
+    private static final int INITIAL_BYTES = 256;
 
-    ByteArrayOutputStream        out;
-    Stack<ByteArrayOutputStream> stack;
+    /** Size of the length slot reserved by {@link #beginMessage()}. */
+    static final int MESSAGE_HEADER_BYTES = 4;
+
+    private byte[] buf;
+    private int count;
 
     BufferOut() {
-        stack = new Stack<>();
-        push();
+        buf = new byte[INITIAL_BYTES];
+    }
+
+    @Override
+    public void write(int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void write(byte[] b) {
+        write(b, 0, b.length);
+    }
+
+    public void writeShort(short v) {
+        ensureCapacity(2);
+        Bin2Bytes.putShort(buf, count, v);
+        count += 2;
+    }
+
+    public void writeInt(int v) {
+        ensureCapacity(4);
+        Bin2Bytes.putInt(buf, count, v);
+        count += 4;
+    }
+
+    public void writeLong(long v) {
+        ensureCapacity(8);
+        Bin2Bytes.putLong(buf, count, v);
+        count += 8;
+    }
+
+    public void writeFloat(float v) {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    public void writeDouble(double v) {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    /** Write all values with a single capacity check. */
+    public void writeInts(int[] values) {
+        int len = values.length;
+        ensureCapacity(len * 4L);
+        int off = count;
+        for (int i = 0; i < len; i++) {
+            Bin2Bytes.putInt(buf, off, values[i]);
+            off += 4;
+        }
+        count = off;
+    }
+
+    /** Write all values with a single capacity check. */
+    public void writeLongs(long[] values) {
+        int len = values.length;
+        ensureCapacity(len * 8L);
+        int off = count;
+        for (int i = 0; i < len; i++) {
+            Bin2Bytes.putLong(buf, off, values[i]);
+            off += 8;
+        }
+        count = off;
+    }
+
+    /**
+     * Start a length-prefixed nested message. Returns a mark that must be passed to
+     * {@link #endMessage(int)} after the message body has been written. Messages may nest.
+     */
+    public int beginMessage() {
+        ensureCapacity(MESSAGE_HEADER_BYTES);
+        int mark = count;
+        count += MESSAGE_HEADER_BYTES;
+        return mark;
+    }
+
+    /** Finish the nested message started at mark by back-patching its length. */
+    public void endMessage(int mark) {
+        int length = count - mark - MESSAGE_HEADER_BYTES;
+        if ((mark < 0) || (length < 0)) {
+            throw new IllegalStateException("invalid message mark " + mark + " for buffer size " + count);
+        }
+        buf[mark]     = (byte) (length >>> 24);
+        buf[mark + 1] = (byte) (length >>> 16);
+        buf[mark + 2] = (byte) (length >>> 8);
+        buf[mark + 3] = (byte) length;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, count);
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buf, 0, count);
+    }
+
+    /** Discard any contents, keeping the backing array for reuse. */
+    public void reset() {
+        count = 0;
     }
 
-    public OutputStream out() {
-        return out;
+    /** Replace the backing array if the last use grew it beyond what is worth keeping around. */
+    public void trim() {
+        if (buf.length > MAX_RETAINED_BYTES) {
+            buf = new byte[INITIAL_BYTES];
+        }
+        count = 0;
     }
 
-    public void push() {
-        stack.push(new ByteArrayOutputStream());
-        out = stack.peek();
+    public void writeTo(ByteBuf out) {
+        out.writeBytes(buf, 0, count);
     }
 
-    public void pop() throws IOException {
-        ByteArrayOutputStream last = stack.pop();
-        out = stack.peek();
-        LessBytes.writeLength(last.size(), out());
-        last.writeTo(out());
+    /**
+     * Make room for at least extra more bytes. Callers writing a run of fixed width values can
+     * call this once up front so that the individual writes never need to grow the buffer.
+     */
+    void ensureCapacity(long extra) {
+        long required = count + extra;
+        if (required > buf.length) {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("buffer size overflow");
+            }
+            buf = Arrays.copyOf(buf, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(required, (long) buf.length << 1)));
+        }
     }
 
     @Override
     public String toString() {
-        return "BufferOut:" + (out != null ? out.size() : -1);
+        return "BufferOut:" + count;
     }
 }
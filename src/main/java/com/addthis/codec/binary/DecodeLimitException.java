@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+/**
+ * Thrown when Bin2 input exceeds one of the configured {@link Bin2Limits}. These are expected
+ * on corrupt or hostile input, so the exception does not capture a stack trace.
+ */
+@SuppressWarnings("serial")
+public class DecodeLimitException extends RuntimeException {
+
+    public enum Limit {
+        BYTES, COLLECTION_LENGTH, DEPTH
+    }
+
+    private final Limit limit;
+    private final long maximum;
+    private final long actual;
+
+    public DecodeLimitException(Limit limit, long maximum, long actual) {
+        super(limit + " limit of " + maximum + " exceeded: " + actual, null, false, false);
+        this.limit = limit;
+        this.maximum = maximum;
+        this.actual = actual;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    public long getMaximum() {
+        return maximum;
+    }
+
+    public long getActual() {
+        return actual;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import javax.annotation.Nullable;
+
+import java.io.EOFException;
+
+import java.lang.reflect.Field;
+
+import com.addthis.codec.reflection.CodableClassInfo;
+
+/**
+ * Byte layout of a class whose codable fields are all primitives, used by the fixed layout mode of
+ * {@link CodecBin2} (see {@link CodecBin2#FIXED_LAYOUT_CODEC_VERSION}). Field values are written back
+ * to back in field order, big-endian and without presence bytes, so the whole object is one block of
+ * {@link CodableClassInfo#primitiveByteWidth()} bytes.
+ *
+ * Fields are read and written through the typed primitive accessors of {@link Field} (eg.
+ * {@link Field#getInt(Object)}), which avoids boxing every value.
+ */
+final class FixedLayout {
+
+    private static final byte BOOLEAN = 0;
+    private static final byte BYTE    = 1;
+    private static final byte SHORT   = 2;
+    private static final byte CHAR    = 3;
+    private static final byte INT     = 4;
+    private static final byte FLOAT   = 5;
+    private static final byte LONG    = 6;
+    private static final byte DOUBLE  = 7;
+
+    private final Field[] fields;
+    private final byte[] kinds;
+    private final int width;
+
+    private FixedLayout(CodableClassInfo classInfo) {
+        int size = classInfo.size();
+        fields = new Field[size];
+        kinds = new byte[size];
+        for (int i = 0; i < size; i++) {
+            fields[i] = classInfo.field(i).getField();
+            kinds[i] = kind(fields[i].getType());
+        }
+        width = classInfo.primitiveByteWidth();
+    }
+
+    /** Null unless the class is all primitive fields. */
+    @Nullable static FixedLayout of(CodableClassInfo classInfo) {
+        if (!classInfo.isAllPrimitive()) {
+            return null;
+        }
+        return new FixedLayout(classInfo);
+    }
+
+    void write(Object object, BufferOut out) {
+        out.ensureCapacity(width);
+        try {
+            for (int i = 0; i < kinds.length; i++) {
+                Field field = fields[i];
+                switch (kinds[i]) {
+                    case BOOLEAN: out.write(field.getBoolean(object) ? 1 : 0); break;
+                    case BYTE:    out.write(field.getByte(object)); break;
+                    case SHORT:   out.writeShort(field.getShort(object)); break;
+                    case CHAR:    out.writeShort((short) field.getChar(object)); break;
+                    case INT:     out.writeInt(field.getInt(object)); break;
+                    case FLOAT:   out.writeFloat(field.getFloat(object)); break;
+                    case LONG:    out.writeLong(field.getLong(object)); break;
+                    default:      out.writeDouble(field.getDouble(object)); break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    void read(Object object, BufferIn in) throws EOFException {
+        in.require(width);
+        try {
+            for (int i = 0; i < kinds.length; i++) {
+                Field field = fields[i];
+                switch (kinds[i]) {
+                    case BOOLEAN: field.setBoolean(object, in.readByte() != 0); break;
+                    case BYTE:    field.setByte(object, in.readByte()); break;
+                    case SHORT:   field.setShort(object, in.readShort()); break;
+                    case CHAR:    field.setChar(object, (char) in.readShort()); break;
+                    case INT:     field.setInt(object, in.readInt()); break;
+                    case FLOAT:   field.setFloat(object, in.readFloat()); break;
+                    case LONG:    field.setLong(object, in.readLong()); break;
+                    default:      field.setDouble(object, in.readDouble()); break;
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Reads one boxed value of a primitive type as laid out in a fixed block. */
+    static Object readValue(Class<?> type, BufferIn in) throws EOFException {
+        return readValue(kind(type), in);
+    }
+
+    private static Object readValue(byte kind, BufferIn in) throws EOFException {
+        switch (kind) {
+            case BOOLEAN: return in.readByte() != 0;
+            case BYTE:    return in.readByte();
+            case SHORT:   return in.readShort();
+            case CHAR:    return (char) in.readShort();
+            case INT:     return in.readInt();
+            case FLOAT:   return in.readFloat();
+            case LONG:    return in.readLong();
+            default:      return in.readDouble();
+        }
+    }
+
+    private static byte kind(Class<?> type) {
+        if (type == boolean.class) {
+            return BOOLEAN;
+        } else if (type == byte.class) {
+            return BYTE;
+        } else if (type == short.class) {
+            return SHORT;
+        } else if (type == char.class) {
+            return CHAR;
+        } else if (type == int.class) {
+            return INT;
+        } else if (type == float.class) {
+            return FLOAT;
+        } else if (type == long.class) {
+            return LONG;
+        } else if (type == double.class) {
+            return DOUBLE;
+        } else {
+            throw new IllegalArgumentException("not a primitive type: " + type);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.util.concurrent.TimeUnit;
+
+import com.addthis.codec.codables.ConcurrentCodable;
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+
+/**
+ * Per-class timers for how long {@link Bin2Encoder} waits for and then holds {@link ConcurrentCodable}
+ * encode locks, registered as "encodeLockWait" and "encodeLockHold" under the codable class. Only
+ * used when {@value Bin2Encoder#LOCK_METRICS_PATH} is set.
+ */
+final class LockTimers {
+
+    static final boolean ENABLED =
+            PluginRegistry.defaultRegistry().config().getBoolean(Bin2Encoder.LOCK_METRICS_PATH);
+
+    private static final ClassValue<LockTimers> TIMERS = new ClassValue<LockTimers>() {
+        @Override protected LockTimers computeValue(Class<?> type) {
+            return new LockTimers(type);
+        }
+    };
+
+    final Timer waitTimer;
+    final Timer holdTimer;
+
+    private LockTimers(Class<?> type) {
+        waitTimer = Metrics.newTimer(type, "encodeLockWait", TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+        holdTimer = Metrics.newTimer(type, "encodeLockHold", TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+    }
+
+    static LockTimers forClass(Class<?> type) {
+        return TIMERS.get(type);
+    }
+}
@@ -14,7 +14,9 @@
 package com.addthis.codec.codables;
 
 /**
- * Used by classes that could be modified during encoding. Only supported by CodecBin2.
+ * Used by classes that could be modified during encoding. Only supported by CodecBin2. The lock is
+ * held for the whole encode of the object, including nested objects; see {@link SnapshotCodable}
+ * to avoid that.
  */
 public interface ConcurrentCodable extends Codable {
 
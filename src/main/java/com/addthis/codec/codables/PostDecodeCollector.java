@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.codables;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Timer;
+
+/**
+ * Defers {@link SuperCodable#postDecode()} calls until a whole object graph has been decoded, instead of
+ * running each one as soon as its object is complete. Supported by the Bin2 decoder and by the jackson
+ * based codecs (see {@code CodecJackson.decodeObject(Class, ConfigValue, PostDecodeCollector)}).
+ *
+ * Decoders call {@link #enter()} and {@link #exit()} around each object and {@link #add(SuperCodable)} once
+ * it is complete, so objects are collected children first, each with its nesting depth. {@link #run()}
+ * then calls postDecode in that same order, or, given an executor, runs all the objects at one depth in
+ * parallel, deepest first. Either way an object's postDecode only runs after those of everything nested
+ * inside it. Each call is timed by a yammer timer named "postDecode" under the object's class.
+ *
+ * Collection is not thread safe; use one collector per decode. If the decode fails, the collected calls
+ * are discarded rather than run.
+ */
+public final class PostDecodeCollector {
+
+    private static final ClassValue<Timer> TIMERS = new ClassValue<Timer>() {
+        @Override protected Timer computeValue(Class<?> type) {
+            return Metrics.newTimer(type, "postDecode", TimeUnit.MICROSECONDS, TimeUnit.SECONDS);
+        }
+    };
+
+    @Nullable private final Executor executor;
+    private final List<SuperCodable> values = new ArrayList<>();
+    private final List<Integer> depths = new ArrayList<>();
+    private int depth;
+
+    private PostDecodeCollector(@Nullable Executor executor) {
+        this.executor = executor;
+    }
+
+    /** Runs postDecode calls one at a time on the thread that calls {@link #run()}. */
+    public static PostDecodeCollector sequential() {
+        return new PostDecodeCollector(null);
+    }
+
+    /** Runs postDecode calls on the executor, one depth at a time. */
+    public static PostDecodeCollector parallel(Executor executor) {
+        return new PostDecodeCollector(executor);
+    }
+
+    public void enter() {
+        depth++;
+    }
+
+    public void exit() {
+        depth--;
+    }
+
+    /** Queue a completed object; its depth is that of the enclosing {@link #enter()} calls. */
+    public void add(SuperCodable value) {
+        values.add(value);
+        depths.add(depth);
+    }
+
+    /**
+     * Drop all collected postDecode calls without running them. Decoders call this when a decode fails, so
+     * that objects from the failed graph are never post-decoded and a reused collector starts out empty.
+     */
+    public void clear() {
+        values.clear();
+        depths.clear();
+        depth = 0;
+    }
+
+    /** Number of postDecode calls waiting to run. */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Run and clear all collected postDecode calls. If any of them throw, the first exception is rethrown
+     * (with any others suppressed) once the calls at its depth have finished, and shallower objects are skipped.
+     */
+    public void run() {
+        try {
+            if (executor == null) {
+                for (SuperCodable value : values) {
+                    postDecode(value);
+                }
+            } else {
+                runParallel(executor);
+            }
+        } finally {
+            clear();
+        }
+    }
+
+    private void runParallel(Executor executor) {
+        int maxDepth = 0;
+        for (Integer valueDepth : depths) {
+            maxDepth = Math.max(maxDepth, valueDepth);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int level = maxDepth; level >= 0; level--) {
+            futures.clear();
+            for (int i = 0; i < values.size(); i++) {
+                if (depths.get(i) == level) {
+                    SuperCodable value = values.get(i);
+                    futures.add(CompletableFuture.runAsync(() -> postDecode(value), executor));
+                }
+            }
+            RuntimeException failure = null;
+            for (CompletableFuture<Void> future : futures) {
+                try {
+                    future.join();
+                } catch (CompletionException ex) {
+                    RuntimeException cause = (ex.getCause() instanceof RuntimeException)
+                                             ? (RuntimeException) ex.getCause() : ex;
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    private static void postDecode(SuperCodable value) {
+        long start = System.nanoTime();
+        try {
+            value.postDecode();
+        } finally {
+            TIMERS.get(value.getClass()).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.codables;
+
+/**
+ * Alternative to {@link ConcurrentCodable} for objects that are modified during encoding. Instead of
+ * holding a lock for the whole (recursive) encode, the object hands back a consistent copy, eg. one
+ * taken under its own lock or a copy-on-write view, and that copy is encoded without any locking.
+ * Takes precedence over ConcurrentCodable. Only supported by CodecBin2.
+ */
+public interface SnapshotCodable extends Codable {
+
+    /**
+     * Returns an instance of the same class to encode in place of this one, or null to encode null.
+     * The snapshot must not be modified while it is being encoded; it is not asked for a snapshot of
+     * its own, but its preEncode method is called if it is a {@link SuperCodable}.
+     */
+    public Object encodeSnapshot();
+}
@@ -32,6 +32,7 @@ import com.addthis.codec.plugins.PluginMap;
 import com.addthis.codec.plugins.PluginRegistry;
 import com.addthis.codec.reflection.CodableClassInfo;
 import com.addthis.codec.reflection.CodableFieldInfo;
+import com.addthis.codec.reflection.TypeDescriptor;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.MoreObjects;
@@ -210,30 +211,13 @@ public final class Configs {
                     throw new ConfigException.WrongType(fieldValue.origin(), fieldName,
                                                         ConfigValueType.LIST.name(), fieldValue.valueType().name());
                 }
-                Class<?> elementType = elementType(fieldInfo);
-                boolean nested = fieldInfo.isCollectionArray();
-                fieldValue = expandSugarArray(fieldValue, elementType, pluginRegistry, nested);
+                fieldValue = expandSugarElement(fieldValue, fieldInfo.getTypeDescriptor(), pluginRegistry);
             } else if (fieldInfo.isMap()) {
                 if (fieldValue.valueType() != ConfigValueType.OBJECT) {
                     throw new ConfigException.WrongType(fieldValue.origin(), fieldName,
                                                         ConfigValueType.OBJECT.name(), fieldValue.valueType().name());
                 }
-                Class<?> elementType = elementType(fieldInfo);
-                boolean nested = fieldInfo.isMapValueArray();
-                ConfigObject fieldMap = (ConfigObject) fieldValue;
-                Map<String, Object> newMap = new HashMap<>(fieldMap.size());
-                for (Map.Entry<String, ConfigValue> mapEntry : fieldMap.entrySet()) {
-                    ConfigValue mapValue = mapEntry.getValue();
-                    String mapKey = mapEntry.getKey();
-                    ConfigValue resolvedMapObject;
-                    if (nested) {
-                        resolvedMapObject = expandSugarArray(mapValue, elementType, pluginRegistry, false);
-                    } else {
-                        resolvedMapObject = expandSugar(elementType, mapValue, pluginRegistry);
-                    }
-                    newMap.put(mapKey, resolvedMapObject.unwrapped());
-                }
-                fieldValue = ConfigValueFactory.fromMap(newMap, fieldMap.origin().description());
+                fieldValue = expandSugarElement(fieldValue, fieldInfo.getTypeDescriptor(), pluginRegistry);
             } else {
                 fieldValue = expandSugar(fieldInfo.getTypeOrComponentType(), fieldValue, pluginRegistry);
             }
@@ -242,22 +226,44 @@ public final class Configs {
         return root;
     }
 
-    private static ConfigList expandSugarArray(ConfigValue fieldValue,
-                                                 Class<?> elementType,
-                                                 PluginRegistry pluginRegistry,
-                                                 boolean nested) {
-        ConfigList fieldList = (ConfigList) fieldValue;
-        List<Object> newList = new ArrayList<>(fieldList.size());
-        for (ConfigValue listEntry : fieldList) {
-            ConfigValue listObject;
-            if (nested) {
-                listObject = expandSugarArray(listEntry, elementType, pluginRegistry, false);
-            } else {
-                listObject = expandSugar(elementType, listEntry, pluginRegistry);
-            }
-            newList.add(listObject.unwrapped());
+    /**
+     * Recurses through arrays, collections, and maps (to any depth) and expands sugar for the codable
+     * values at the leaves. Nested lists get the same single value auto-wrapping as top level fields.
+     */
+    private static ConfigValue expandSugarElement(ConfigValue value,
+                                                  TypeDescriptor type,
+                                                  PluginRegistry pluginRegistry) {
+        switch (type.getKind()) {
+            case ARRAY:
+            case COLLECTION:
+                if (value.valueType() != ConfigValueType.LIST) {
+                    value = ConfigValueFactory.fromIterable(
+                            Collections.singletonList(value.unwrapped()), "auto collection of " +
+                                                                          value.origin().description());
+                }
+                ConfigList list = (ConfigList) value;
+                List<Object> newList = new ArrayList<>(list.size());
+                for (ConfigValue listEntry : list) {
+                    newList.add(expandSugarElement(listEntry, type.getElementType(), pluginRegistry).unwrapped());
+                }
+                return ConfigValueFactory.fromIterable(newList, list.origin().description());
+            case MAP:
+                if (value.valueType() != ConfigValueType.OBJECT) {
+                    return value;
+                }
+                ConfigObject map = (ConfigObject) value;
+                Map<String, Object> newMap = new HashMap<>(map.size());
+                for (Map.Entry<String, ConfigValue> mapEntry : map.entrySet()) {
+                    ConfigValue mapValue = expandSugarElement(mapEntry.getValue(), type.getElementType(), pluginRegistry);
+                    newMap.put(mapEntry.getKey(), mapValue.unwrapped());
+                }
+                return ConfigValueFactory.fromMap(newMap, map.origin().description());
+            default:
+                if (isCodableType(type.getRawType())) {
+                    return expandSugar(type.getRawType(), value, pluginRegistry);
+                }
+                return value;
         }
-        return ConfigValueFactory.fromIterable(newList, fieldList.origin().description());
     }
 
     private static Class<?> elementType(CodableFieldInfo fieldInfo) {
@@ -271,7 +277,10 @@ public final class Configs {
     }
 
     private static boolean isCodableType(CodableFieldInfo fieldInfo) {
-        Class<?> expectedType = elementType(fieldInfo);
+        return isCodableType(elementType(fieldInfo));
+    }
+
+    private static boolean isCodableType(Class<?> expectedType) {
         if (expectedType.isAssignableFrom(String.class)) {
             return false;
         } else if ((expectedType == boolean.class) || (expectedType == Boolean.class)) {
@@ -13,15 +13,19 @@
  */
 package com.addthis.codec.jackson;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 
 import java.util.Iterator;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
 
-import com.addthis.codec.annotations.Bytes;
-import com.addthis.codec.annotations.Time;
+import com.addthis.codec.codables.PostDecodeCollector;
 import com.addthis.codec.codables.SuperCodable;
 
+import com.google.common.collect.ImmutableMap;
+
 import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -35,22 +39,34 @@ import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
 import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.util.NameTransformer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.dropwizard.util.Duration;
-import io.dropwizard.util.Size;
-
 public class CodecBeanDeserializer extends DelegatingDeserializer {
     private static final Logger log = LoggerFactory.getLogger(CodecBeanDeserializer.class);
-    private static final Pattern NUMBER_UNIT = Pattern.compile("(\\d+)\\s*([^\\s\\d]+)");
 
-    private final ObjectNode fieldDefaults;
+    /** Only the properties that need more than plain binding; see {@link FieldAction}. */
+    private final ImmutableMap<String, FieldAction> actions;
+    private final boolean streaming;
 
     protected CodecBeanDeserializer(BeanDeserializerBase src, ObjectNode fieldDefaults) {
+        this(src, FieldAction.tableFor(src, fieldDefaults), false);
+    }
+
+    /**
+     * @param streaming apply defaults and conversions while the object's tokens go by (see
+     *                  {@link FieldDefaultsParser}) instead of reading each object into a tree first
+     */
+    protected CodecBeanDeserializer(BeanDeserializerBase src, ObjectNode fieldDefaults, boolean streaming) {
+        this(src, FieldAction.tableFor(src, fieldDefaults), streaming);
+    }
+
+    CodecBeanDeserializer(BeanDeserializerBase src, ImmutableMap<String, FieldAction> actions, boolean streaming) {
         super(src);
-        this.fieldDefaults = fieldDefaults;
+        this.actions = actions;
+        this.streaming = streaming;
     }
 
     @Override public BeanDeserializerBase getDelegatee() {
@@ -58,7 +74,7 @@ public class CodecBeanDeserializer extends DelegatingDeserializer {
     }
 
     @Override protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
-        return new CodecBeanDeserializer((BeanDeserializerBase) newDelegatee, fieldDefaults);
+        return new CodecBeanDeserializer((BeanDeserializerBase) newDelegatee, actions, streaming);
     }
 
     @Override
@@ -66,12 +82,15 @@ public class CodecBeanDeserializer extends DelegatingDeserializer {
         JsonLocation currentLocation = jp.getTokenLocation();
         JsonToken t = jp.getCurrentToken();
         try {
-            if (t == JsonToken.START_OBJECT) {
+            if ((t == JsonToken.START_OBJECT) && (streaming || actions.isEmpty())) {
+                // without defaults or conversions only explicit nulls need a look, which is not worth a tree
+                jp = new FieldDefaultsParser(jp, ctxt, this);
+            } else if (t == JsonToken.START_OBJECT) {
                 ObjectNode objectNode = jp.readValueAsTree();
                 handleDefaultsAndRequiredAndNull(ctxt, objectNode);
                 jp = jp.getCodec().treeAsTokens(objectNode);
                 jp.nextToken();
-            } else if (t == JsonToken.END_OBJECT) {
+            } else if ((t == JsonToken.END_OBJECT) && !actions.isEmpty()) {
                 // for some reason this is how they chose to handle single field objects
                 jp.nextToken();
                 ObjectNode objectNode = ctxt.getNodeFactory().objectNode();
@@ -79,54 +98,90 @@ public class CodecBeanDeserializer extends DelegatingDeserializer {
                 jp = jp.getCodec().treeAsTokens(objectNode);
                 jp.nextToken();
             }
-            Object value = getDelegatee().deserialize(jp, ctxt);
+            PostDecodeCollector collector = (PostDecodeCollector) ctxt.getAttribute(PostDecodeCollector.class);
+            if (collector == null) {
+                Object value = getDelegatee().deserialize(jp, ctxt);
+                if (value instanceof SuperCodable) {
+                    ((SuperCodable) value).postDecode();
+                }
+                return value;
+            }
+            Object value;
+            collector.enter();
+            try {
+                value = getDelegatee().deserialize(jp, ctxt);
+            } finally {
+                collector.exit();
+            }
             if (value instanceof SuperCodable) {
-                ((SuperCodable) value).postDecode();
+                collector.add((SuperCodable) value);
             }
             return value;
         } catch (JsonMappingException ex) {
-            throw Jackson.maybeImproveLocation(currentLocation, ex);
+            throw Jackson.maybeImproveLocation(currentLocation, ex, Jackson.lightweightErrors(ctxt));
         }
     }
 
     private void handleDefaultsAndRequiredAndNull(DeserializationContext ctxt, ObjectNode fieldValues)
             throws JsonMappingException {
-        Iterator<SettableBeanProperty> propertyIterator = getDelegatee().properties();
-        while (propertyIterator.hasNext()) {
-            SettableBeanProperty prop = propertyIterator.next();
-            String propertyName = prop.getName();
-            JsonNode fieldValue = fieldValues.path(propertyName);
+        for (FieldAction action : actions.values()) {
+            JsonNode fieldValue = fieldValues.path(action.name);
             if (fieldValue.isMissingNode() || fieldValue.isNull()) {
-                if (fieldDefaults.hasNonNull(propertyName)) {
-                    fieldValue = fieldDefaults.get(propertyName).deepCopy();
-                    fieldValues.set(propertyName, fieldValue);
-                } else if (prop.isRequired()) {
-                    throw MissingPropertyException.from(ctxt.getParser(), prop.getType().getRawClass(),
-                                                        propertyName, getKnownPropertyNames());
-                } else if (fieldValue.isNull()
-                           && (prop.getType().isPrimitive() || (prop.getValueDeserializer().getNullValue() == null))) {
-                    // don't overwrite possible hard-coded defaults/ values with nulls unless they are fancy
-                    fieldValues.remove(propertyName);
+                if (action.fieldDefault != null) {
+                    // shared rather than copied; fieldValues is only read as tokens from here on
+                    fieldValue = action.fieldDefault;
+                    fieldValues.set(action.name, fieldValue);
+                } else if (action.required) {
+                    throw missingProperty(ctxt, action.name);
                 }
             }
             if (fieldValue.isTextual()) {
-                try {
-                    // sometimes we erroneously get strings that would parse into valid numbers and maybe other edge
-                    // cases (eg. when using system property overrides in typesafe-config). So we'll go ahead and guard
-                    // with this regex to make sure we only get reasonable candidates.
-                    Time time = prop.getAnnotation(Time.class);
-                    if ((time != null) && NUMBER_UNIT.matcher(fieldValue.textValue()).matches()) {
-                        Duration dropWizardDuration = Duration.parse(fieldValue.asText());
-                        long asLong = time.value().convert(dropWizardDuration.getQuantity(), dropWizardDuration.getUnit());
-                        fieldValues.put(propertyName, asLong);
-                    } else if ((prop.getAnnotation(Bytes.class) != null) &&
-                               NUMBER_UNIT.matcher(fieldValue.textValue()).matches()) {
-                        Size dropWizardSize = Size.parse(fieldValue.asText());
-                        long asLong = dropWizardSize.toBytes();
-                        fieldValues.put(propertyName, asLong);
-                    }
-                } catch (Throwable cause) {
-                    throw JsonMappingException.wrapWithPath(cause, prop.getType().getRawClass(), propertyName);
+                Long converted = action.convertUnits(fieldValue.textValue());
+                if (converted != null) {
+                    fieldValues.put(action.name, converted);
+                }
+            }
+        }
+        // any nulls left over belong to properties without defaults; only the explicit ones need a look
+        Iterator<Map.Entry<String, JsonNode>> fields = fieldValues.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isNull()) {
+                SettableBeanProperty prop = getDelegatee().findProperty(field.getKey());
+                if ((prop != null) && dropsNull(prop)) {
+                    // don't overwrite possible hard-coded defaults/ values with nulls unless they are fancy
+                    fields.remove();
+                }
+            }
+        }
+    }
+
+    /** Codec specific handling for the property, or null if it is bound as is. */
+    @Nullable FieldAction action(String propertyName) {
+        return actions.get(propertyName);
+    }
+
+    /** Whether an explicit null should be dropped so that the value set by the class itself survives. */
+    static boolean dropsNull(SettableBeanProperty prop) {
+        return prop.getType().isPrimitive() || (prop.getValueDeserializer().getNullValue() == null);
+    }
+
+    JsonMappingException missingProperty(DeserializationContext ctxt, String propertyName) {
+        SettableBeanProperty prop = getDelegatee().findProperty(propertyName);
+        return MissingPropertyException.from(ctxt.getParser(), prop.getType().getRawClass(),
+                                             propertyName, getKnownPropertyNames());
+    }
+
+    /** Write the defaults of all properties that were neither seen nor given an explicit value. */
+    void writeMissingDefaults(DeserializationContext ctxt, Set<String> seen, TokenBuffer buffer)
+            throws IOException {
+        for (FieldAction action : actions.values()) {
+            if (!seen.contains(action.name)) {
+                if (action.fieldDefault != null) {
+                    buffer.writeFieldName(action.name);
+                    action.writeDefault(buffer);
+                } else if (action.required) {
+                    throw missingProperty(ctxt, action.name);
                 }
             }
         }
@@ -37,10 +37,12 @@ public class CodecBeanDeserializerModifier extends BeanDeserializerModifier {
 
     private final Config globalDefaults;
     private final boolean modifyEnum;
+    private final boolean streaming;
 
     public CodecBeanDeserializerModifier(Config globalDefaults) {
         this.globalDefaults = globalDefaults;
         this.modifyEnum = globalDefaults.getBoolean("addthis.codec.jackson.ignore.enum-case");
+        this.streaming = globalDefaults.getBoolean("addthis.codec.jackson.streaming-fields");
     }
 
     @Override public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config,
@@ -68,7 +70,8 @@ public class CodecBeanDeserializerModifier extends BeanDeserializerModifier {
                     }
                 }
             }
-            return new CodecBeanDeserializer(beanDeserializer, fieldDefaults);
+            return new CodecBeanDeserializer(beanDeserializer, FieldAction.tableFor(beanDeserializer, fieldDefaults),
+                                             streaming);
         } else {
             return deserializer;
         }
@@ -14,6 +14,7 @@
 package com.addthis.codec.jackson;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.Syntax;
 import javax.validation.ConstraintViolation;
 import javax.validation.ValidationException;
@@ -21,25 +22,43 @@ import javax.validation.Validator;
 
 import java.io.IOException;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.addthis.codec.config.ConfigTraversingParser;
+import com.addthis.codec.codables.PostDecodeCollector;
 import com.addthis.codec.config.Configs;
 import com.addthis.codec.plugins.PluginMap;
 import com.addthis.codec.plugins.PluginRegistry;
+import com.addthis.codec.reflection.Fields;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigException;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigValue;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.dropwizard.validation.ConstraintViolations;
 
 /**
@@ -50,18 +69,41 @@ import io.dropwizard.validation.ConstraintViolations;
  */
 @Beta
 public class CodecJackson {
+    private static final Logger log = LoggerFactory.getLogger(CodecJackson.class);
+
+    // bounded since callers may ask for readers of arbitrary generic types
+    private static final int MAX_CACHED_TYPES = 1000;
 
     private final ObjectMapper objectMapper;
     private final PluginRegistry pluginRegistry;
     private final Config globalDefaults;
     private final Validator validator;
 
+    /**
+     * Readers and writers with their root (de)serializers already looked up; see {@link #readerFor(JavaType)}.
+     * Null when classes must stay unloadable, since types refer to their classes; see {@link Fields#weakClassKeys()}.
+     */
+    @Nullable private final Cache<JavaType, ObjectReader> readers;
+    @Nullable private final Cache<JavaType, ObjectWriter> writers;
+
     public CodecJackson(ObjectMapper objectMapper, PluginRegistry pluginRegistry,
                         Config globalDefaults, Validator validator) {
+        this(objectMapper, pluginRegistry, globalDefaults, validator, Fields.weakClassKeys());
+    }
+
+    CodecJackson(ObjectMapper objectMapper, PluginRegistry pluginRegistry,
+                 Config globalDefaults, Validator validator, boolean weakClassKeys) {
         this.objectMapper = objectMapper;
         this.pluginRegistry = pluginRegistry;
         this.globalDefaults = globalDefaults;
         this.validator = validator;
+        if (weakClassKeys) {
+            this.readers = null;
+            this.writers = null;
+        } else {
+            this.readers = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TYPES).build();
+            this.writers = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TYPES).build();
+        }
     }
 
     public CodecJackson withConfig(Config newGlobalDefaults) {
@@ -100,6 +142,122 @@ public class CodecJackson {
         return validator;
     }
 
+    /**
+     * Reader for the type that is built once and then shared, so that repeated decoding skips constructing
+     * the reader and looking up its root deserializer. Like any ObjectReader it is immutable and thread safe;
+     * callers may derive readers with attributes or a value to update from it.
+     *
+     * A reader captures the object mapper's configuration when it is built. Shared readers are rebuilt once
+     * the mapper's features change, but a reader a caller holds on to keeps the configuration it was built
+     * with, as do all readers after modules are registered with the mapper.
+     */
+    public ObjectReader readerFor(@Nonnull JavaType type) {
+        if (readers == null) {
+            return objectMapper.readerFor(type);
+        }
+        ObjectReader reader = readers.getIfPresent(type);
+        if ((reader == null) || (reader.getConfig() != objectMapper.getDeserializationConfig())) {
+            reader = objectMapper.readerFor(type);
+            readers.put(type, reader);
+        }
+        return reader;
+    }
+
+    public ObjectReader readerFor(@Nonnull Class<?> type) {
+        return readerFor(objectMapper.constructType(type));
+    }
+
+    public ObjectReader readerFor(@Nonnull TypeReference<?> type) {
+        return readerFor(objectMapper.getTypeFactory().constructType(type));
+    }
+
+    /** Shared writer for values of the type; the writer counterpart of {@link #readerFor(JavaType)}. */
+    public ObjectWriter writerFor(@Nonnull JavaType type) {
+        if (writers == null) {
+            return objectMapper.writerFor(type);
+        }
+        ObjectWriter writer = writers.getIfPresent(type);
+        if ((writer == null) || (writer.getConfig() != objectMapper.getSerializationConfig())) {
+            writer = objectMapper.writerFor(type);
+            writers.put(type, writer);
+        }
+        return writer;
+    }
+
+    public ObjectWriter writerFor(@Nonnull Class<?> type) {
+        return writerFor(objectMapper.constructType(type));
+    }
+
+    /**
+     * Builds the serializers and deserializers of every class in the plugin registry (base classes, aliases,
+     * and _array/_default sugar) ahead of time, so that the first real decode of each does not pay for it.
+     * Runs on the calling thread.
+     *
+     * @return nanoseconds spent on each class, in registry order
+     */
+    public Map<Class<?>, Long> warmUp() {
+        Map<Class<?>, Long> nanos = new LinkedHashMap<>();
+        for (Class<?> type : pluginClasses()) {
+            nanos.put(type, warmUp(type));
+        }
+        return nanos;
+    }
+
+    /** Like {@link #warmUp()}, but warms up classes in parallel on the executor and waits for all of them. */
+    public Map<Class<?>, Long> warmUp(Executor executor) {
+        Set<Class<?>> types = pluginClasses();
+        List<CompletableFuture<Long>> futures = new ArrayList<>(types.size());
+        for (Class<?> type : types) {
+            futures.add(CompletableFuture.supplyAsync(() -> warmUp(type), executor));
+        }
+        Map<Class<?>, Long> nanos = new LinkedHashMap<>();
+        int i = 0;
+        for (Class<?> type : types) {
+            nanos.put(type, futures.get(i++).join());
+        }
+        return nanos;
+    }
+
+    private Set<Class<?>> pluginClasses() {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        for (PluginMap pluginMap : pluginRegistry.asMap().values()) {
+            if (pluginMap.baseClass() != null) {
+                types.add(pluginMap.baseClass());
+            }
+            types.addAll(pluginMap.asBiMap().values());
+        }
+        return types;
+    }
+
+    /** Problems are only logged; decoding the class will report them properly if it is ever attempted. */
+    private long warmUp(Class<?> type) {
+        long start = System.nanoTime();
+        JavaType javaType = objectMapper.constructType(type);
+        AtomicReference<Throwable> cause = new AtomicReference<>();
+        try {
+            if (objectMapper.canDeserialize(javaType, cause)) {
+                readerFor(javaType);
+            }
+        } catch (RuntimeException ex) {
+            cause.set(ex);
+        }
+        if (cause.get() != null) {
+            log.warn("could not build deserializer for {} during warm up", type, cause.get());
+        }
+        cause.set(null);
+        try {
+            if (objectMapper.canSerialize(type, cause)) {
+                writerFor(javaType);
+            }
+        } catch (RuntimeException ex) {
+            cause.set(ex);
+        }
+        if (cause.get() != null) {
+            log.warn("could not build serializer for {} during warm up", type, cause.get());
+        }
+        return System.nanoTime() - start;
+    }
+
     // doesn't delegate
 
     /**
@@ -114,13 +272,32 @@ public class CodecJackson {
     public <T> T decodeObject(@Nonnull Class<T> type, ConfigValue configValue)
             throws JsonProcessingException, IOException {
         ConfigTraversingParser configParser = new ConfigTraversingParser(configValue, objectMapper);
-        return validate(configParser.readValueAs(type));
+        return validate(readerFor(type).<T>readValue(configParser));
+    }
+
+    /**
+     * Like {@link #decodeObject(Class, ConfigValue)}, but defers all postDecode calls until the whole object
+     * graph is built and then runs them through the collector (before validation).
+     */
+    public <T> T decodeObject(@Nonnull Class<T> type, ConfigValue configValue, PostDecodeCollector collector)
+            throws JsonProcessingException, IOException {
+        ConfigTraversingParser configParser = new ConfigTraversingParser(configValue, objectMapper);
+        T value;
+        try {
+            value = readerFor(type).withAttribute(PostDecodeCollector.class, collector).readValue(configParser);
+        } catch (Throwable cause) {
+            // nothing from a partially decoded graph may be post-decoded
+            collector.clear();
+            throw cause;
+        }
+        collector.run();
+        return validate(value);
     }
 
     public <T> T decodeObject(@Nonnull TypeReference<T> type, ConfigValue configValue)
             throws JsonProcessingException, IOException {
         ConfigTraversingParser configParser = new ConfigTraversingParser(configValue, objectMapper);
-        return validate(configParser.readValueAs(type));
+        return validate(readerFor(type).<T>readValue(configParser));
     }
 
     public <T> T decodeObject(@Nonnull Class<T> type, JsonNode jsonNode) throws JsonProcessingException {
@@ -17,6 +17,7 @@ import com.addthis.codec.plugins.PluginRegistry;
 
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.typesafe.config.Config;
 
 public class CodecModule extends Module {
@@ -45,6 +46,12 @@ public class CodecModule extends Module {
         if (globalConfig.getBoolean("addthis.codec.jackson.modify-fields")) {
             context.addBeanDeserializerModifier(new CodecBeanDeserializerModifier(globalConfig));
         }
+        int parallelThreshold = globalConfig.getInt("addthis.codec.jackson.parallel-plugin-lists");
+        if (parallelThreshold > 0) {
+            ObjectMapper objectMapper = context.getOwner();
+            context.addBeanDeserializerModifier(
+                    new ParallelPluginListModifier(pluginRegistry, objectMapper, parallelThreshold));
+        }
     }
 
     @Override public String getModuleName() {
@@ -18,6 +18,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 
 import java.util.Iterator;
+import java.util.Map;
 
 import com.addthis.codec.plugins.PluginMap;
 
@@ -26,8 +27,10 @@ import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.util.JsonParserSequence;
 import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -39,8 +42,7 @@ import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
 import com.fasterxml.jackson.databind.jsontype.impl.TypeDeserializerBase;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.typesafe.config.Config;
-import com.typesafe.config.ConfigObject;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import static com.fasterxml.jackson.databind.JsonMappingException.wrapWithPath;
 
@@ -104,16 +106,23 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
         }
         // can use this to approximate error location if a sub-method throws an exception
         JsonLocation currentLocation = jp.getTokenLocation();
-        JsonNode jsonNode;
-        // empty objects can appear with END_OBJECT. that has special handling lots of places, but not in readTree
-        if (jp.getCurrentToken() == JsonToken.END_OBJECT) {
-            jsonNode = ctxt.getNodeFactory().objectNode();
-        } else {
-            jsonNode = jp.readValueAsTree();
-        }
         ObjectCodec objectCodec = jp.getCodec();
 
         try {
+            JsonNode jsonNode;
+            // empty objects can appear with END_OBJECT. that has special handling lots of places, but not in readTree
+            if (jp.getCurrentToken() == JsonToken.END_OBJECT) {
+                jsonNode = ctxt.getNodeFactory().objectNode();
+            } else if (jp.getCurrentToken() == JsonToken.START_OBJECT) {
+                ObjectNode objectNode = ctxt.getNodeFactory().objectNode();
+                String type = readFieldsUntilStreamableType(jp, ctxt, objectNode);
+                if (type != null) {
+                    return _deserializeStreamingFromProperty(jp, ctxt, objectNode, type);
+                }
+                jsonNode = objectNode;
+            } else {
+                jsonNode = jp.readValueAsTree();
+            }
             Object bean = null;
             // _array handler
             if (jsonNode.isArray()) {
@@ -133,8 +142,67 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                 return deser.deserialize(treeParser, ctxt);
             }
         } catch (JsonMappingException ex) {
-            throw Jackson.maybeImproveLocation(currentLocation, ex);
+            throw Jackson.maybeImproveLocation(currentLocation, ex, Jackson.lightweightErrors(ctxt));
+        }
+    }
+
+    /**
+     * Reads the object's fields into the given node until it finds a type property whose alias has no
+     * defaults to merge, returning that type with the parser on its value. If there is no such type
+     * property, the whole object ends up in the node and null is returned.
+     */
+    @Nullable private String readFieldsUntilStreamableType(JsonParser jp,
+                                                           DeserializationContext ctxt,
+                                                           ObjectNode objectNode) throws IOException {
+        for (JsonToken t = jp.nextToken(); t == JsonToken.FIELD_NAME; t = jp.nextToken()) {
+            String fieldName = jp.getCurrentName();
+            JsonToken valueToken = jp.nextToken();
+            if ((valueToken == JsonToken.VALUE_STRING) && fieldName.equals(_typePropertyName)) {
+                String type = jp.getText();
+                if (idRes.aliasDefaults(type).size() == 0) {
+                    return type;
+                }
+            }
+            if (objectNode.has(fieldName) && ctxt.isEnabled(DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY)) {
+                throw JsonMappingException.from(jp, "Duplicate field '" + fieldName
+                                                    + "' for ObjectNode: not allowed when "
+                                                    + "FAIL_ON_READING_DUP_TREE_KEY enabled");
+            }
+            objectNode.set(fieldName, (JsonNode) jp.readValueAsTree());
+        }
+        return null;
+    }
+
+    /**
+     * Typed objects without alias defaults need no rewriting, so only the fields read before the type
+     * property are replayed and the rest is streamed straight from the parser, the same way jackson's
+     * own property based type deserializer works.
+     */
+    private Object _deserializeStreamingFromProperty(JsonParser jp,
+                                                     DeserializationContext ctxt,
+                                                     ObjectNode fieldsBeforeType,
+                                                     String type) throws IOException {
+        JsonDeserializer<Object> deser;
+        try {
+            deser = _findDeserializer(ctxt, type);
+        } catch (Throwable cause) {
+            throw wrapWithPath(cause, Class.class, _typePropertyName);
         }
+        TokenBuffer buffer = new TokenBuffer(jp, ctxt);
+        buffer.writeStartObject();
+        Iterator<Map.Entry<String, JsonNode>> fields = fieldsBeforeType.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            buffer.writeFieldName(field.getKey());
+            buffer.writeTree(field.getValue());
+        }
+        if (_typeIdVisible) {
+            buffer.writeFieldName(_typePropertyName);
+            buffer.writeString(type);
+        }
+        JsonParser objectParser = JsonParserSequence.createFlattened(buffer.asParser(jp), jp);
+        objectParser.nextToken();
+        return deser.deserialize(objectParser, ctxt);
     }
 
     @Nullable public Object _deserializeTypedFromObject(ObjectNode objectNode,
@@ -155,16 +223,16 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
             return bean;
         }
         if (idRes.isValidTypeId("_default")) {
-            ConfigObject aliasDefaults = pluginMap.aliasDefaults("_default");
             JsonDeserializer<Object> deser = _findDeserializer(ctxt, "_default");
-            boolean unwrapPrimary = handleDefaultsAndImplicitPrimary(objectNode, aliasDefaults, deser, ctxt);
+            boolean unwrapPrimary = handleDefaultsAndImplicitPrimary(objectNode, "_default", deser, ctxt);
             try {
                 JsonParser treeParser = objectCodec.treeAsTokens(objectNode);
                 treeParser.nextToken();
                 bean = deser.deserialize(treeParser, ctxt);
             } catch (IOException cause) {
                 if (unwrapPrimary) {
-                    throw Jackson.maybeUnwrapPath((String) aliasDefaults.get("_primary").unwrapped(), cause);
+                    throw Jackson.maybeUnwrapPath(pluginMap.primaryField("_default"), cause,
+                                                  Jackson.lightweightErrors(ctxt));
                 } else {
                     throw cause;
                 }
@@ -206,12 +274,11 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
             }
         }
         if (matched != null) {
-            ConfigObject aliasDefaults = pluginMap.aliasDefaults(matched);
             JsonNode configValue = objectNode.get(matched);
-            String primaryField = (String) aliasDefaults.get("_primary").unwrapped();
+            String primaryField = pluginMap.primaryField(matched);
             objectNode.remove(matched);
             Jackson.setAt(objectNode, configValue, primaryField);
-            Jackson.merge(objectNode, Jackson.configConverter(aliasDefaults));
+            Jackson.mergeShared(objectNode, idRes.aliasDefaults(matched));
             if (_typeIdVisible) {
                 objectNode.put(_typePropertyName, matched);
             }
@@ -221,7 +288,8 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                 treeParser.nextToken();
                 return deser.deserialize(treeParser, ctxt);
             } catch (IOException cause) {
-                IOException unwrapped = Jackson.maybeUnwrapPath(primaryField, cause);
+                IOException unwrapped =
+                        Jackson.maybeUnwrapPath(primaryField, cause, Jackson.lightweightErrors(ctxt));
                 if (unwrapped != cause) {
                     throw wrapWithPath(unwrapped, idRes.typeFromId(ctxt, matched), matched);
                 } else {
@@ -238,13 +306,7 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                                                              ObjectCodec objectCodec,
                                                              DeserializationContext ctxt) throws IOException {
         if (idRes.isValidTypeId(singleKeyName)) {
-            ConfigObject aliasDefaults = pluginMap.aliasDefaults(singleKeyName);
-            String primaryField;
-            if (aliasDefaults.containsKey("_primary")) {
-                primaryField = (String) aliasDefaults.get("_primary").unwrapped();
-            } else {
-                primaryField = null;
-            }
+            String primaryField = pluginMap.primaryField(singleKeyName);
             boolean unwrapPrimary = false;
             try {
                 JsonNode singleKeyValue = objectNode.get(singleKeyName);
@@ -254,13 +316,13 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                     if (primaryField != null) {
                         ObjectNode singleKeyObject = (ObjectNode) objectCodec.createObjectNode();
                         Jackson.setAt(singleKeyObject, singleKeyValue, primaryField);
-                        Jackson.merge(singleKeyObject, Jackson.configConverter(aliasDefaults));
+                        Jackson.mergeShared(singleKeyObject, idRes.aliasDefaults(singleKeyName));
                         singleKeyValue = singleKeyObject;
                         unwrapPrimary = true;
                     } // else let the downstream serializer try to handle it or complain
                 } else {
                     ObjectNode singleKeyObject = (ObjectNode) singleKeyValue;
-                    unwrapPrimary = handleDefaultsAndImplicitPrimary(singleKeyObject, aliasDefaults, deser, ctxt);
+                    unwrapPrimary = handleDefaultsAndImplicitPrimary(singleKeyObject, singleKeyName, deser, ctxt);
                 }
                 if (_typeIdVisible && singleKeyValue.isObject()) {
                     ((ObjectNode) singleKeyValue).put(_typePropertyName, singleKeyName);
@@ -270,7 +332,7 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                 return deser.deserialize(treeParser, ctxt);
             } catch (IOException cause) {
                 if (unwrapPrimary) {
-                    cause = Jackson.maybeUnwrapPath(primaryField, cause);
+                    cause = Jackson.maybeUnwrapPath(primaryField, cause, Jackson.lightweightErrors(ctxt));
                 }
                 throw wrapWithPath(cause, idRes.typeFromId(ctxt, singleKeyName), singleKeyName);
             } catch (Throwable cause) {
@@ -293,21 +355,15 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
         } catch (Throwable cause) {
             throw wrapWithPath(cause, Class.class, _typePropertyName);
         }
-        ConfigObject aliasDefaults = pluginMap.aliasDefaults(type);
-        String primaryField;
-        if (aliasDefaults.containsKey("_primary")) {
-            primaryField = (String) aliasDefaults.get("_primary").unwrapped();
-        } else {
-            primaryField = null;
-        }
-        boolean unwrapPrimary = handleDefaultsAndImplicitPrimary(objectNode, aliasDefaults, deser, ctxt);
+        String primaryField = pluginMap.primaryField(type);
+        boolean unwrapPrimary = handleDefaultsAndImplicitPrimary(objectNode, type, deser, ctxt);
         try {
             JsonParser treeParser = objectCodec.treeAsTokens(objectNode);
             treeParser.nextToken();
             return deser.deserialize(treeParser, ctxt);
         } catch (IOException cause) {
             if (unwrapPrimary) {
-                throw Jackson.maybeUnwrapPath(primaryField, cause);
+                throw Jackson.maybeUnwrapPath(primaryField, cause, Jackson.lightweightErrors(ctxt));
             } else {
                 throw cause;
             }
@@ -318,19 +374,17 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                                                         ObjectCodec objectCodec,
                                                         DeserializationContext ctxt) throws IOException {
         if (idRes.isValidTypeId("_array")) {
-            Config aliasDefaults = pluginMap.aliasDefaults("_array").toConfig();
-            String arrayField = aliasDefaults.getString("_primary");
+            String arrayField = pluginMap.primaryField("_array");
             try {
                 ObjectNode objectFieldValues = (ObjectNode) objectCodec.createObjectNode();
                 Jackson.setAt(objectFieldValues, arrayNode, arrayField);
-                ObjectNode aliasFieldDefaults = Jackson.configConverter(aliasDefaults.root());
-                Jackson.merge(objectFieldValues, aliasFieldDefaults);
+                Jackson.mergeShared(objectFieldValues, idRes.aliasDefaults("_array"));
                 JsonDeserializer<Object> deser = _findDeserializer(ctxt, "_array");
                 JsonParser treeParser = objectCodec.treeAsTokens(objectFieldValues);
                 treeParser.nextToken();
                 return deser.deserialize(treeParser, ctxt);
             } catch (IOException ex) {
-                throw Jackson.maybeUnwrapPath(arrayField, ex);
+                throw Jackson.maybeUnwrapPath(arrayField, ex, Jackson.lightweightErrors(ctxt));
             }
         } else {
             return null;
@@ -338,16 +392,17 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
     }
 
     private boolean handleDefaultsAndImplicitPrimary(ObjectNode fieldValues,
-                                                     ConfigObject aliasDefaults,
+                                                     String alias,
                                                      JsonDeserializer<?> deserializer,
                                                      DeserializationContext ctxt) throws JsonMappingException {
-        if (!aliasDefaults.isEmpty()) {
+        ObjectNode aliasDefaults = idRes.aliasDefaults(alias);
+        if (aliasDefaults.size() > 0) {
             if (deserializer instanceof DelegatingDeserializer) {
                 deserializer = ((DelegatingDeserializer) deserializer).getDelegatee();
             }
-            if ((deserializer instanceof BeanDeserializerBase) && (aliasDefaults.get("_primary") != null)) {
+            String primaryField = pluginMap.primaryField(alias);
+            if ((deserializer instanceof BeanDeserializerBase) && (primaryField != null)) {
                 BeanDeserializerBase beanDeserializer = (BeanDeserializerBase) deserializer;
-                String primaryField = (String) aliasDefaults.get("_primary").unwrapped();
                 if (!fieldValues.has(primaryField)) {
                     // user has not explicitly set a value where _primary points, see if _primary is a plugin type
                     SettableBeanProperty primaryProperty = beanDeserializer.findProperty(primaryField);
@@ -385,7 +440,7 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                                 // then wrap the value with its key (its type), and stash it in our primary field
                                 JsonNode inlinedPrimaryValue = fieldValues.remove(possibleInlinedPrimary);
                                 fieldValues.with(primaryField).set(possibleInlinedPrimary, inlinedPrimaryValue);
-                                Jackson.merge(fieldValues, Jackson.configConverter(aliasDefaults));
+                                Jackson.mergeShared(fieldValues, aliasDefaults);
                                 return true;
                             }
                         }
@@ -393,7 +448,7 @@ public class CodecTypeDeserializer extends TypeDeserializerBase {
                 }
             }
             // merge alias defaults here since we check for empty etc anyway
-            Jackson.merge(fieldValues, Jackson.configConverter(aliasDefaults));
+            Jackson.mergeShared(fieldValues, aliasDefaults);
         }
         return false;
     }
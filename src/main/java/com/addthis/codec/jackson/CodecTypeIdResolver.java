@@ -13,13 +13,20 @@
  */
 package com.addthis.codec.jackson;
 
+import javax.annotation.Nullable;
+
 import java.util.Collection;
+import java.util.Optional;
 
 import com.addthis.codec.plugins.PluginMap;
 import com.addthis.codec.plugins.PluginRegistry;
 import com.addthis.codec.plugins.Plugins;
 
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableBiMap;
@@ -30,12 +37,21 @@ import com.fasterxml.jackson.databind.DatabindContext;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.jsontype.NamedType;
 import com.fasterxml.jackson.databind.jsontype.impl.TypeIdResolverBase;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 public class CodecTypeIdResolver extends TypeIdResolverBase {
+    // bounded since type ids are also tried against arbitrary keys, eg. by the single key sugar
+    private static final int MAX_CACHED_IDS = 1000;
+
     private final PluginMap pluginMap;
     private final BiMap<String, Class<?>> extraSubTypes;
     private final PluginRegistry pluginRegistry;
+    /** Classes found for ids so far, with empty values for ids that did not name any class. */
+    private final Cache<String, Optional<Class<?>>> resolvedIds =
+            CacheBuilder.newBuilder().maximumSize(MAX_CACHED_IDS).build();
+    /** Alias defaults converted to json on first use, so that decoding does not convert them every time. */
+    private final LoadingCache<String, ObjectNode> aliasDefaultsNodes;
 
     public CodecTypeIdResolver(PluginMap pluginMap, JavaType baseType,
                                TypeFactory typeFactory, Collection<NamedType> subtypes,
@@ -54,21 +70,25 @@ public class CodecTypeIdResolver extends TypeIdResolverBase {
             this.extraSubTypes = ImmutableBiMap.of();
         }
         this.pluginMap = pluginMap;
+        this.aliasDefaultsNodes = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_IDS).build(
+                new CacheLoader<String, ObjectNode>() {
+                    @Override public ObjectNode load(String alias) {
+                        return Jackson.configConverter(pluginMap.aliasDefaults(alias));
+                    }
+                });
+    }
+
+    /**
+     * {@link PluginMap#aliasDefaults(String)} as json. Nodes are shared between decodes so callers must not
+     * modify them, but may splice them into other nodes with {@link Jackson#mergeShared}.
+     */
+    ObjectNode aliasDefaults(String alias) {
+        return aliasDefaultsNodes.getUnchecked(alias);
     }
 
     public boolean isValidTypeId(String typeId) {
-        Class<?> cls = pluginMap.getClassIfConfigured(typeId);
-        if (cls == null) {
-            cls = extraSubTypes.get(typeId);
-        }
-        try {
-            if (cls == null) {
-                cls = pluginMap.getClass(typeId);
-            }
-        } catch (ClassNotFoundException ignored) {
-            return false;
-        }
-        return _baseType.getRawClass().isAssignableFrom(cls);
+        Class<?> cls = findClass(typeId);
+        return (cls != null) && _baseType.getRawClass().isAssignableFrom(cls);
     }
 
     @Override
@@ -99,13 +119,10 @@ public class CodecTypeIdResolver extends TypeIdResolverBase {
         if (Strings.isNullOrEmpty(id)) {
             return null;
         }
-        Class<?> cls = pluginMap.getClassIfConfigured(id);
-        if (cls == null) {
-            cls = extraSubTypes.get(id);
-        }
         try {
+            Class<?> cls = findClass(id);
             if (cls == null) {
-                cls = pluginMap.getClass(id);
+                throw new ClassNotFoundException(id);
             }
             return typeFactory.constructSpecializedType(_baseType, cls);
         } catch (Exception e) {
@@ -113,4 +130,29 @@ public class CodecTypeIdResolver extends TypeIdResolverBase {
             throw new IllegalArgumentException(helpMessage, e);
         }
     }
+
+    /**
+     * Looks for the class in the plugin map's aliases, then the extra subtypes, and then as a class name.
+     * Returns null if there is no such class. Failed lookups are cached too, because they try to load a
+     * class once for every parent package of the base class.
+     */
+    @Nullable private Class<?> findClass(String typeId) {
+        Optional<Class<?>> cached = resolvedIds.getIfPresent(typeId);
+        if (cached == null) {
+            Class<?> cls = pluginMap.getClassIfConfigured(typeId);
+            if (cls == null) {
+                cls = extraSubTypes.get(typeId);
+            }
+            if (cls == null) {
+                try {
+                    cls = pluginMap.getClass(typeId);
+                } catch (ClassNotFoundException ignored) {
+                    // cached as missing below
+                }
+            }
+            cached = Optional.ofNullable(cls);
+            resolvedIds.put(typeId, cached);
+        }
+        return cached.orElse(null);
+    }
 }
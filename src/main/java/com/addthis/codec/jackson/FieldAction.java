@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.addthis.codec.annotations.Bytes;
+import com.addthis.codec.annotations.Time;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerBase;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+
+/**
+ * What {@link CodecBeanDeserializer} has to do for one bean property on top of plain jackson binding: fill
+ * in a global default, insist on a value, or convert "10 seconds" style text for {@link Time} and
+ * {@link Bytes}. The annotations and defaults are looked up once when the table is built, and properties
+ * that need none of this are left out, so decoding only visits the properties that matter.
+ */
+final class FieldAction {
+    private static final Pattern NUMBER_UNIT = Pattern.compile("(\\d+)\\s*([^\\s\\d]+)");
+
+    final String name;
+    /** Global default for the property, or null if there isn't one. */
+    @Nullable final JsonNode fieldDefault;
+    final boolean required;
+
+    private final Class<?> rawType;
+    @Nullable private final TimeUnit timeUnit;
+    private final boolean bytes;
+
+    private FieldAction(SettableBeanProperty prop, @Nullable JsonNode fieldDefault) {
+        this.name = prop.getName();
+        this.fieldDefault = fieldDefault;
+        this.required = prop.isRequired();
+        this.rawType = prop.getType().getRawClass();
+        Time time = prop.getAnnotation(Time.class);
+        this.timeUnit = (time != null) ? time.value() : null;
+        this.bytes = prop.getAnnotation(Bytes.class) != null;
+    }
+
+    /** Actions for the properties of the bean that need any, keyed by name and in property order. */
+    static ImmutableMap<String, FieldAction> tableFor(BeanDeserializerBase beanDeserializer,
+                                                      ObjectNode fieldDefaults) {
+        ImmutableMap.Builder<String, FieldAction> table = ImmutableMap.builder();
+        Iterator<SettableBeanProperty> propertyIterator = beanDeserializer.properties();
+        while (propertyIterator.hasNext()) {
+            SettableBeanProperty prop = propertyIterator.next();
+            JsonNode fieldDefault = fieldDefaults.get(prop.getName());
+            if ((fieldDefault != null) && fieldDefault.isNull()) {
+                fieldDefault = null;
+            }
+            FieldAction action = new FieldAction(prop, fieldDefault);
+            if ((fieldDefault != null) || action.required || action.convertsUnits()) {
+                table.put(action.name, action);
+            }
+        }
+        return table.build();
+    }
+
+    /** Writes the default value, converting textual {@code @Time} and {@code @Bytes} defaults like any other text. */
+    void writeDefault(JsonGenerator out) throws IOException {
+        if (fieldDefault.isTextual()) {
+            Long converted = convertUnits(fieldDefault.textValue());
+            if (converted != null) {
+                out.writeNumber(converted);
+                return;
+            }
+        }
+        out.writeTree(fieldDefault);
+    }
+
+    boolean convertsUnits() {
+        return (timeUnit != null) || bytes;
+    }
+
+    /**
+     * Converts "10 seconds" style text into a number for properties with {@link Time} or {@link Bytes}.
+     * Returns null if the property has neither or the text does not look like a number and a unit.
+     */
+    @Nullable Long convertUnits(String text) throws JsonMappingException {
+        // sometimes we erroneously get strings that would parse into valid numbers and maybe other edge
+        // cases (eg. when using system property overrides in typesafe-config). So we'll go ahead and guard
+        // with this regex to make sure we only get reasonable candidates.
+        if (!convertsUnits() || !NUMBER_UNIT.matcher(text).matches()) {
+            return null;
+        }
+        try {
+            if (timeUnit != null) {
+                Duration dropWizardDuration = Duration.parse(text);
+                return timeUnit.convert(dropWizardDuration.getQuantity(), dropWizardDuration.getUnit());
+            } else {
+                Size dropWizardSize = Size.parse(text);
+                return dropWizardSize.toBytes();
+            }
+        } catch (Throwable cause) {
+            throw JsonMappingException.wrapWithPath(cause, rawType, name);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.io.IOException;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.SettableBeanProperty;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Streaming version of {@link CodecBeanDeserializer}'s tree based field handling. Wraps a parser positioned
+ * at the START_OBJECT of a bean and passes its tokens through, except for the bean's own properties:
+ * <ul>
+ *     <li>explicit nulls are replaced with the field default, rejected for required fields, or dropped</li>
+ *     <li>text values of {@code @Time} and {@code @Bytes} properties are converted to numbers</li>
+ *     <li>defaults for properties that never showed up are written just before the END_OBJECT</li>
+ * </ul>
+ * Only the field names and rewritten values go through small token buffers; nested values are never
+ * buffered, so each token is handled once no matter how deeply beans are nested.
+ *
+ * All advancing must go through {@link #nextToken()} to keep track of nesting, so the delegating
+ * shortcuts of {@link JsonParserDelegate} are overridden in terms of it.
+ */
+final class FieldDefaultsParser extends JsonParserDelegate {
+
+    private final JsonParser source;
+    private final DeserializationContext ctxt;
+    private final CodecBeanDeserializer deserializer;
+    private final Set<String> seen = new HashSet<>();
+
+    /** Nesting level of the source relative to the bean; 1 while between its own fields. */
+    private int depth = 1;
+    /** After the current buffer runs out, return the source's current token instead of advancing it. */
+    private boolean resumeSource;
+
+    FieldDefaultsParser(JsonParser source, DeserializationContext ctxt, CodecBeanDeserializer deserializer) {
+        super(source);
+        this.source = source;
+        this.ctxt = ctxt;
+        this.deserializer = deserializer;
+    }
+
+    @Override public JsonToken nextToken() throws IOException {
+        if (delegate != source) {
+            JsonToken t = delegate.nextToken();
+            if (t != null) {
+                return t;
+            }
+            delegate = source;
+            if (resumeSource) {
+                resumeSource = false;
+                return track(source.getCurrentToken());
+            }
+        }
+        while (true) {
+            JsonToken t = source.nextToken();
+            if (depth != 1) {
+                return track(t);
+            } else if (t == JsonToken.END_OBJECT) {
+                TokenBuffer buffer = new TokenBuffer(source, ctxt);
+                deserializer.writeMissingDefaults(ctxt, seen, buffer);
+                return replay(buffer, true);
+            } else if (t != JsonToken.FIELD_NAME) {
+                return track(t);
+            }
+            String propertyName = source.getCurrentName();
+            SettableBeanProperty prop = deserializer.getDelegatee().findProperty(propertyName);
+            if (prop == null) {
+                // unknown properties are passed along for the bean deserializer to complain about or ignore
+                seen.add(propertyName);
+                return t;
+            }
+            FieldAction action = deserializer.action(propertyName);
+            JsonToken valueToken = source.nextToken();
+            TokenBuffer buffer = new TokenBuffer(source, ctxt);
+            if (valueToken == JsonToken.VALUE_NULL) {
+                if ((action != null) && (action.fieldDefault != null)) {
+                    seen.add(propertyName);
+                    buffer.writeFieldName(propertyName);
+                    action.writeDefault(buffer);
+                    return replay(buffer, false);
+                } else if ((action != null) && action.required) {
+                    throw deserializer.missingProperty(ctxt, propertyName);
+                } else if (CodecBeanDeserializer.dropsNull(prop)) {
+                    // don't overwrite possible hard-coded defaults/ values with nulls unless they are fancy
+                    continue;
+                }
+            } else if ((valueToken == JsonToken.VALUE_STRING) && (action != null)) {
+                Long converted = action.convertUnits(source.getText());
+                if (converted != null) {
+                    seen.add(propertyName);
+                    buffer.writeFieldName(propertyName);
+                    buffer.writeNumber(converted);
+                    return replay(buffer, false);
+                }
+            }
+            // the value is fine as is; replay the name, then pick up the value from the source
+            seen.add(propertyName);
+            buffer.writeFieldName(propertyName);
+            return replay(buffer, true);
+        }
+    }
+
+    @Override public JsonToken nextValue() throws IOException {
+        JsonToken t = nextToken();
+        if (t == JsonToken.FIELD_NAME) {
+            t = nextToken();
+        }
+        return t;
+    }
+
+    @Override public JsonParser skipChildren() throws IOException {
+        JsonToken t = getCurrentToken();
+        if ((t == null) || !t.isStructStart()) {
+            return this;
+        }
+        int open = 1;
+        while (open > 0) {
+            t = nextToken();
+            if (t == null) {
+                break;
+            } else if (t.isStructStart()) {
+                open++;
+            } else if (t.isStructEnd()) {
+                open--;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Switch over to the buffered tokens. Empty buffers are skipped; the source's current token is then
+     * returned if it is to be resumed, and otherwise the source moves on as usual.
+     */
+    private JsonToken replay(TokenBuffer buffer, boolean resume) throws IOException {
+        JsonParser buffered = buffer.asParser(source.getCodec());
+        JsonToken t = buffered.nextToken();
+        if (t != null) {
+            delegate = buffered;
+            resumeSource = resume;
+            return t;
+        } else if (resume) {
+            return track(source.getCurrentToken());
+        } else {
+            return nextToken();
+        }
+    }
+
+    private JsonToken track(JsonToken t) {
+        if (t != null) {
+            if (t.isStructStart()) {
+                depth++;
+            } else if (t.isStructEnd()) {
+                depth--;
+            }
+        }
+        return t;
+    }
+}
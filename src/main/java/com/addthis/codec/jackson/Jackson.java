@@ -19,6 +19,7 @@ import java.io.IOException;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import com.addthis.codec.plugins.PluginRegistry;
 import com.addthis.codec.utils.ExecutorsModule;
@@ -28,8 +29,10 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -76,14 +79,26 @@ public final class Jackson {
     }
 
     public static ObjectMapper newObjectMapper(PluginRegistry pluginRegistry) {
+        return newObjectMapper(pluginRegistry, new JsonFactory());
+    }
+
+    /**
+     * Same configuration as {@link #newObjectMapper(PluginRegistry)}, but backed by the given factory.
+     * Use this to get plugins, defaults, etc. with other jackson data formats (eg. smile).
+     */
+    public static ObjectMapper newObjectMapper(PluginRegistry pluginRegistry, JsonFactory jsonFactory) {
         CodecModule codecModule = new CodecModule(pluginRegistry);
         Config globalConfig = pluginRegistry.config();
-        ObjectMapper objectMapper = new ObjectMapper();
+        ObjectMapper objectMapper = new ObjectMapper(jsonFactory);
         toggleObjectMapperOptions(objectMapper);
         objectMapper.registerModule(codecModule);
         registerExtraModules(objectMapper);
         allowCommentsAndUnquotedFields(objectMapper);
         objectMapper.setInjectableValues(new BasicInjectableValues());
+        if (globalConfig.getBoolean("addthis.codec.jackson.lightweight-errors")) {
+            objectMapper.setConfig(objectMapper.getDeserializationConfig()
+                                               .withAttribute(LightweightMappingException.class, true));
+        }
         return objectMapper;
     }
 
@@ -150,6 +165,31 @@ public final class Jackson {
         }
     }
 
+    /**
+     * Like {@link #merge(ObjectNode, ObjectNode)}, but values missing from primary are shared with backup instead
+     * of copied, so that cached defaults can be merged into every decoded object without copying them each time.
+     * Since primary may already hold nodes shared by an earlier merge, its nested objects are copied (one level
+     * at a time) before anything is merged into them; backup is never modified. Callers must not modify the
+     * merged node below its top level afterwards, which holds when it is only turned back into tokens, as codec
+     * does with defaults.
+     */
+    static void mergeShared(ObjectNode primary, ObjectNode backup) {
+        Iterator<Map.Entry<String, JsonNode>> fields = backup.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode primaryValue = primary.get(field.getKey());
+            if (primaryValue == null) {
+                primary.set(field.getKey(), field.getValue());
+            } else if (primaryValue.isObject() && field.getValue().isObject()) {
+                // copy on write; the object may be a node shared with this or another backup
+                ObjectNode primaryCopy = primary.objectNode();
+                primaryCopy.setAll((ObjectNode) primaryValue);
+                primary.set(field.getKey(), primaryCopy);
+                mergeShared(primaryCopy, (ObjectNode) field.getValue());
+            }
+        }
+    }
+
     private static final Splitter dotSplitter = Splitter.on('.');
 
     public static void setAt(ObjectNode root, JsonNode value, String path) {
@@ -168,7 +208,20 @@ public final class Jackson {
         }
     }
 
+    /**
+     * Whether the decode should report errors with {@link LightweightMappingException}s. Enabled for the whole
+     * mapper by {@code addthis.codec.jackson.lightweight-errors}, or per decode with an ObjectReader attribute.
+     */
+    public static boolean lightweightErrors(DeserializationContext ctxt) {
+        return Boolean.TRUE.equals(ctxt.getAttribute(LightweightMappingException.class));
+    }
+
     public static IOException maybeUnwrapPath(String pathToSkip, IOException cause) {
+        return maybeUnwrapPath(pathToSkip, cause, false);
+    }
+
+    /** @param lightweight return a {@link LightweightMappingException} instead of a regular one */
+    public static IOException maybeUnwrapPath(String pathToSkip, IOException cause, boolean lightweight) {
         if ((pathToSkip != null) && (cause instanceof JsonMappingException)) {
             JsonMappingException mappingException = (JsonMappingException) cause;
             List<JsonMappingException.Reference> paths = mappingException.getPath();
@@ -185,6 +238,9 @@ public final class Jackson {
                         return cause;
                     }
                 }
+                if (lightweight) {
+                    return LightweightMappingException.unwrapped(mappingException, Lists.newArrayList(refIterator));
+                }
                 JsonMappingException unwrapped = new JsonMappingException(rootMessage(mappingException),
                                                                           mappingException.getLocation(),
                                                                           mappingException.getCause());
@@ -205,36 +261,24 @@ public final class Jackson {
     }
 
     public static JsonMappingException maybeImproveLocation(JsonLocation wrapLoc, JsonMappingException cause) {
-        JsonLocation exLoc = cause.getLocation();
-        if (isRealLocation(wrapLoc) && !isRealLocation(exLoc)) {
-            if (wrapLoc.getSourceRef() instanceof ConfigValue) {
-                ConfigValue locRef = (ConfigValue) wrapLoc.getSourceRef();
-                List<JsonMappingException.Reference> paths = cause.getPath();
-                for (JsonMappingException.Reference path : paths) {
-                    if (locRef instanceof ConfigObject) {
-                        String fieldName = path.getFieldName();
-                        ConfigObject locRefObject = (ConfigObject) locRef;
-                        if (locRefObject.containsKey(fieldName)) {
-                            locRef = locRefObject.get(fieldName);
-                        } else {
-                            break;
-                        }
-                    } else if (locRef instanceof ConfigList) {
-                        int fieldIndex = path.getIndex();
-                        ConfigList locRefList = (ConfigList) locRef;
-                        if ((fieldIndex >= 0) && (locRefList.size() > fieldIndex)) {
-                            locRef = locRefList.get(fieldIndex);
-                        } else {
-                            break;
-                        }
-                    } else {
-                        break;
-                    }
-                }
-                if (locRef != wrapLoc.getSourceRef()) {
-                    wrapLoc = fromConfigValue(locRef);
-                }
+        return maybeImproveLocation(wrapLoc, cause, false);
+    }
+
+    /** @param lightweight return a {@link LightweightMappingException} instead of a regular one */
+    public static JsonMappingException maybeImproveLocation(JsonLocation wrapLoc, JsonMappingException cause,
+                                                            boolean lightweight) {
+        boolean causeHasLocation;
+        if (cause instanceof LightweightMappingException) {
+            // avoid resolving its location just to find out that it has one
+            causeHasLocation = ((LightweightMappingException) cause).hasRealLocation();
+        } else {
+            causeHasLocation = isRealLocation(cause.getLocation());
+        }
+        if (isRealLocation(wrapLoc) && !causeHasLocation) {
+            if (lightweight) {
+                return LightweightMappingException.withLocation(wrapLoc, cause);
             }
+            wrapLoc = resolveLocation(wrapLoc, cause.getPath());
             List<JsonMappingException.Reference> paths = Lists.reverse(cause.getPath());
             if (!paths.isEmpty()) {
                 JsonMappingException withLoc = new JsonMappingException(rootMessage(cause), wrapLoc, cause);
@@ -249,6 +293,41 @@ public final class Jackson {
         return cause;
     }
 
+    /**
+     * If the location is in a config tree, follow the path down the tree as far as it goes and return the
+     * location of the value found there instead.
+     */
+    static JsonLocation resolveLocation(JsonLocation wrapLoc, List<JsonMappingException.Reference> paths) {
+        if (wrapLoc.getSourceRef() instanceof ConfigValue) {
+            ConfigValue locRef = (ConfigValue) wrapLoc.getSourceRef();
+            for (JsonMappingException.Reference path : paths) {
+                if (locRef instanceof ConfigObject) {
+                    String fieldName = path.getFieldName();
+                    ConfigObject locRefObject = (ConfigObject) locRef;
+                    if (locRefObject.containsKey(fieldName)) {
+                        locRef = locRefObject.get(fieldName);
+                    } else {
+                        break;
+                    }
+                } else if (locRef instanceof ConfigList) {
+                    int fieldIndex = path.getIndex();
+                    ConfigList locRefList = (ConfigList) locRef;
+                    if ((fieldIndex >= 0) && (locRefList.size() > fieldIndex)) {
+                        locRef = locRefList.get(fieldIndex);
+                    } else {
+                        break;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (locRef != wrapLoc.getSourceRef()) {
+                return fromConfigValue(locRef);
+            }
+        }
+        return wrapLoc;
+    }
+
     public static String rootMessage(JsonMappingException ex) {
         String rootMessage = ex.getOriginalMessage();
         if (ex instanceof PropertyBindingException) {
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+/**
+ * What {@link Jackson#maybeImproveLocation} and {@link Jackson#maybeUnwrapPath} throw instead of rebuilding
+ * regular mapping exceptions when lightweight errors are on. These have no stack trace of their own (the
+ * original exception is still the cause), and finding the location in a config tree is put off until
+ * {@link #getLocation()} is called, which includes rendering the message. Handy when many decodes are
+ * expected to fail and only some of the errors are ever shown.
+ */
+public class LightweightMappingException extends JsonMappingException {
+
+    /** Location to resolve along {@link #locationPath} on first use; null once resolved. */
+    @Nullable private JsonLocation unresolvedLocation;
+    @Nullable private List<Reference> locationPath;
+
+    private LightweightMappingException(String msg,
+                                        @Nullable JsonLocation unresolvedLocation,
+                                        List<Reference> locationPath,
+                                        Throwable rootCause,
+                                        List<Reference> path) {
+        super(msg, null, rootCause);
+        this.unresolvedLocation = unresolvedLocation;
+        this.locationPath = locationPath;
+        if (!path.isEmpty()) {
+            _path = new LinkedList<>(path);
+        }
+    }
+
+    /** Same as the cause, but located by the wrapping location and the cause's path into it. */
+    static LightweightMappingException withLocation(JsonLocation wrapLoc, JsonMappingException cause) {
+        List<Reference> path = new ArrayList<>(cause.getPath());
+        return new LightweightMappingException(Jackson.rootMessage(cause), wrapLoc, path, cause, path);
+    }
+
+    /** Same as the cause, but with the remaining path and the cause's own root cause. */
+    static LightweightMappingException unwrapped(JsonMappingException cause, List<Reference> remainingPath) {
+        if (cause instanceof LightweightMappingException) {
+            LightweightMappingException lightweight = (LightweightMappingException) cause;
+            if (lightweight.unresolvedLocation != null) {
+                return new LightweightMappingException(Jackson.rootMessage(cause), lightweight.unresolvedLocation,
+                                                       lightweight.locationPath, cause.getCause(), remainingPath);
+            }
+        }
+        return new LightweightMappingException(Jackson.rootMessage(cause), cause.getLocation(),
+                                               Collections.<Reference>emptyList(), cause.getCause(), remainingPath);
+    }
+
+    /** Whether {@link #getLocation()} will be a real location, without working it out. */
+    boolean hasRealLocation() {
+        return Jackson.isRealLocation((unresolvedLocation != null) ? unresolvedLocation : _location);
+    }
+
+    @Override public JsonLocation getLocation() {
+        if (unresolvedLocation != null) {
+            _location = Jackson.resolveLocation(unresolvedLocation, locationPath);
+            unresolvedLocation = null;
+            locationPath = null;
+        }
+        return _location;
+    }
+
+    @Override public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
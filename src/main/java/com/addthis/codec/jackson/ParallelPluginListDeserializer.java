@@ -0,0 +1,179 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.io.IOException;
+
+import java.lang.reflect.Array;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.stream.IntStream;
+
+import com.addthis.codec.codables.PostDecodeCollector;
+import com.addthis.codec.config.ConfigTraversingParser;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.AnnotationIntrospector;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.ValueInstantiator;
+import com.fasterxml.jackson.databind.deser.std.CollectionDeserializer;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.typesafe.config.ConfigList;
+import com.typesafe.config.ConfigValue;
+
+/**
+ * Decodes large lists and arrays of plugins with each element on its own task in the common fork join pool.
+ * Lists with fewer elements than the threshold are handed to the regular collection deserializer as usual.
+ * Otherwise every element is decoded as a root value of the content type, and the results are put back in
+ * order. If any elements fail, the error of the first one is thrown with its index in the path and the rest
+ * are attached as suppressed exceptions.
+ *
+ * Elements are decoded by readers built from the current context's configuration, so features and
+ * attributes set on an ObjectReader for just one call (eg. lightweight errors) still apply; each element
+ * gets its own deserialization context. A list read directly from a {@link ConfigTraversingParser} is
+ * decoded straight from its config elements, which keep their origins. Other input is read into a tree
+ * first, and errors are located from the list's own location and the path, as in
+ * {@link Jackson#maybeImproveLocation(JsonLocation, JsonMappingException)}. Properties with a custom
+ * content deserializer (eg. {@code @JsonDeserialize(contentUsing = ...)}) are always decoded by the
+ * regular collection deserializer, as are decodes that collect postDecode calls (see
+ * {@link PostDecodeCollector}), since collectors are not thread safe.
+ */
+public class ParallelPluginListDeserializer extends DelegatingDeserializer {
+
+    private final ObjectMapper objectMapper;
+    private final JavaType containerType;
+    private final int threshold;
+
+    public ParallelPluginListDeserializer(JsonDeserializer<?> delegatee, ObjectMapper objectMapper,
+                                          JavaType containerType, int threshold) {
+        super(delegatee);
+        this.objectMapper = objectMapper;
+        this.containerType = containerType;
+        this.threshold = threshold;
+    }
+
+    @Override protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+        return new ParallelPluginListDeserializer(newDelegatee, objectMapper, containerType, threshold);
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property)
+            throws JsonMappingException {
+        JsonDeserializer<?> contextual = super.createContextual(ctxt, property);
+        AnnotationIntrospector introspector = ctxt.getAnnotationIntrospector();
+        if ((property != null) && (property.getMember() != null) && (introspector != null)
+            && (introspector.findContentDeserializer(property.getMember()) != null)) {
+            // only the regular deserializer knows how to use a custom content deserializer
+            return ((DelegatingDeserializer) contextual).getDelegatee();
+        }
+        return contextual;
+    }
+
+    @Override
+    public Object deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+        if (!jp.isExpectedStartArrayToken() || !canCollect()
+            || (ctxt.getAttribute(PostDecodeCollector.class) != null)) {
+            return _delegatee.deserialize(jp, ctxt);
+        }
+        JsonLocation currentLocation = jp.getTokenLocation();
+        ObjectReader reader = objectMapper.readerFor(containerType.getContentType()).with(ctxt.getConfig());
+        Object[] values;
+        Exception[] failures;
+        ConfigValue configList = (jp instanceof ConfigTraversingParser)
+                                 ? ((ConfigTraversingParser) jp).currentConfig() : null;
+        if (configList instanceof ConfigList) {
+            ConfigList elements = (ConfigList) configList;
+            if (elements.size() < threshold) {
+                return _delegatee.deserialize(jp, ctxt);
+            }
+            jp.skipChildren();
+            values = new Object[elements.size()];
+            failures = new Exception[values.length];
+            IntStream.range(0, values.length).parallel().forEach(i -> {
+                try {
+                    values[i] = reader.readValue(new ConfigTraversingParser(elements.get(i), objectMapper));
+                } catch (Exception ex) {
+                    failures[i] = ex;
+                }
+            });
+        } else {
+            ArrayNode elements = jp.readValueAsTree();
+            if (elements.size() < threshold) {
+                JsonParser treeParser = objectMapper.treeAsTokens(elements);
+                treeParser.nextToken();
+                try {
+                    return _delegatee.deserialize(treeParser, ctxt);
+                } catch (JsonMappingException ex) {
+                    throw Jackson.maybeImproveLocation(currentLocation, ex, Jackson.lightweightErrors(ctxt));
+                }
+            }
+            values = new Object[elements.size()];
+            failures = new Exception[values.length];
+            IntStream.range(0, values.length).parallel().forEach(i -> {
+                try {
+                    values[i] = reader.readValue(elements.get(i));
+                } catch (Exception ex) {
+                    failures[i] = ex;
+                }
+            });
+        }
+        JsonMappingException failure = null;
+        for (int i = 0; i < failures.length; i++) {
+            if (failures[i] != null) {
+                JsonMappingException withPath =
+                        JsonMappingException.wrapWithPath(failures[i], containerType.getRawClass(), i);
+                if (failure == null) {
+                    failure = withPath;
+                } else {
+                    failure.addSuppressed(withPath);
+                }
+            }
+        }
+        if (failure != null) {
+            throw Jackson.maybeImproveLocation(currentLocation, failure, Jackson.lightweightErrors(ctxt));
+        }
+        return collect(values, ctxt);
+    }
+
+    /** Arrays can always be built from the elements; collections need a default constructor. */
+    private boolean canCollect() {
+        if (_delegatee instanceof CollectionDeserializer) {
+            ValueInstantiator instantiator = ((CollectionDeserializer) _delegatee).getValueInstantiator();
+            return (instantiator != null) && instantiator.canCreateUsingDefault();
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object collect(Object[] values, DeserializationContext ctxt) throws IOException {
+        if (_delegatee instanceof CollectionDeserializer) {
+            ValueInstantiator instantiator = ((CollectionDeserializer) _delegatee).getValueInstantiator();
+            Collection<Object> collection = (Collection<Object>) instantiator.createUsingDefault(ctxt);
+            Collections.addAll(collection, values);
+            return collection;
+        }
+        Object[] array = (Object[]) Array.newInstance(containerType.getContentType().getRawClass(), values.length);
+        System.arraycopy(values, 0, array, 0, values.length);
+        return array;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import com.addthis.codec.annotations.Pluggable;
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.CollectionDeserializer;
+import com.fasterxml.jackson.databind.deser.std.ObjectArrayDeserializer;
+import com.fasterxml.jackson.databind.type.ArrayType;
+import com.fasterxml.jackson.databind.type.CollectionType;
+
+/**
+ * Swaps in {@link ParallelPluginListDeserializer} for plain collections and arrays whose elements are
+ * plugins, ie. have {@link Pluggable} or a category in the plugin registry.
+ */
+public class ParallelPluginListModifier extends BeanDeserializerModifier {
+
+    private final PluginRegistry pluginRegistry;
+    private final ObjectMapper objectMapper;
+    private final int threshold;
+
+    public ParallelPluginListModifier(PluginRegistry pluginRegistry, ObjectMapper objectMapper, int threshold) {
+        this.pluginRegistry = pluginRegistry;
+        this.objectMapper = objectMapper;
+        this.threshold = threshold;
+    }
+
+    @Override public JsonDeserializer<?> modifyCollectionDeserializer(DeserializationConfig config,
+                                                                      CollectionType type,
+                                                                      BeanDescription beanDesc,
+                                                                      JsonDeserializer<?> deserializer) {
+        if ((deserializer instanceof CollectionDeserializer) && isPlugin(type.getContentType())) {
+            return new ParallelPluginListDeserializer(deserializer, objectMapper, type, threshold);
+        }
+        return deserializer;
+    }
+
+    @Override public JsonDeserializer<?> modifyArrayDeserializer(DeserializationConfig config,
+                                                                 ArrayType valueType,
+                                                                 BeanDescription beanDesc,
+                                                                 JsonDeserializer<?> deserializer) {
+        if ((deserializer instanceof ObjectArrayDeserializer) && isPlugin(valueType.getContentType())) {
+            return new ParallelPluginListDeserializer(deserializer, objectMapper, valueType, threshold);
+        }
+        return deserializer;
+    }
+
+    private boolean isPlugin(JavaType type) {
+        Class<?> rawType = type.getRawClass();
+        return rawType.isAnnotationPresent(Pluggable.class) || pluginRegistry.byClass().containsKey(rawType);
+    }
+}
@@ -13,6 +13,8 @@
  */
 package com.addthis.codec.json;
 
+import javax.annotation.Nullable;
+
 import java.io.IOException;
 
 import com.addthis.codec.Codec;
@@ -23,6 +25,8 @@ import com.addthis.maljson.JSONObject;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,17 +44,17 @@ public final class CodecJSON implements Codec {
 
     @Override
     public byte[] encode(Object obj) throws Exception {
-        return Jackson.defaultCodec().getObjectMapper().writeValueAsBytes(obj);
+        return writerFor(obj).writeValueAsBytes(obj);
     }
 
     @Override
     public <T> T decode(T shell, byte[] data) throws IOException {
-        return Jackson.defaultCodec().getObjectMapper().readerForUpdating(shell).readValue(data);
+        return readerForUpdating(shell).readValue(data);
     }
 
     @Override
     public <T> T decode(Class<T> type, byte[] data) throws Exception {
-        return Jackson.defaultCodec().getObjectMapper().reader(type).readValue(data);
+        return Jackson.defaultCodec().readerFor(type).readValue(data);
     }
 
     @Override
@@ -65,16 +69,16 @@ public final class CodecJSON implements Codec {
     /** @deprecated Use {@link #encodeJsonNode(Object)} or {@link CodecJackson} */
     @Deprecated
     public static JSONObject encodeJSON(Object object) throws Exception {
-        return new JSONObject(Jackson.defaultCodec().getObjectMapper().writeValueAsString(object));
+        return new JSONObject(writerFor(object).writeValueAsString(object));
     }
 
     public static String encodeString(Object object) throws JsonProcessingException {
-        return Jackson.defaultCodec().getObjectMapper().writeValueAsString(object);
+        return writerFor(object).writeValueAsString(object);
     }
 
     public static String tryEncodeString(Object object, String defaultValue) {
         try {
-            return Jackson.defaultCodec().getObjectMapper().writeValueAsString(object);
+            return writerFor(object).writeValueAsString(object);
         } catch (JsonProcessingException ex) {
             return defaultValue;
         }
@@ -83,14 +87,28 @@ public final class CodecJSON implements Codec {
     /** @deprecated Use {@link #decodeString(Class, String)} instead. */
     @Deprecated
     public static <T> T decodeString(T object, String json) throws IOException {
-        return Jackson.defaultCodec().getObjectMapper().readerForUpdating(object).readValue(json);
+        return readerForUpdating(object).readValue(json);
     }
 
     public static <T> T decodeString(Class<T> type, String json) throws IOException {
-        return Jackson.defaultCodec().getObjectMapper().reader(type).readValue(json);
+        return Jackson.defaultCodec().readerFor(type).readValue(json);
     }
 
     public static <T> T decodeJSON(T object, JsonNode json) throws IOException {
-        return Jackson.defaultCodec().getObjectMapper().readerForUpdating(object).readValue(json);
+        return readerForUpdating(object).readValue(json);
+    }
+
+    /** Shared reader for the value's class, set to update the value. */
+    private static ObjectReader readerForUpdating(Object value) {
+        return Jackson.defaultCodec().readerFor(value.getClass()).withValueToUpdate(value);
+    }
+
+    /** Shared writer for the value's class, or a plain one for null. */
+    private static ObjectWriter writerFor(@Nullable Object value) {
+        CodecJackson codec = Jackson.defaultCodec();
+        if (value == null) {
+            return codec.getObjectMapper().writer();
+        }
+        return codec.writerFor(value.getClass());
     }
 }
@@ -52,6 +52,7 @@ public class PluginMap {
     @Nonnull private final BiMap<String, Class<?>> map;
     @Nonnull private final Map<String, String> aliases;
     @Nonnull private final Set<String> inlinedAliases;
+    @Nonnull private final Map<String, String> primaryFields;
 
     @Nonnull private final String category;
     @Nonnull private final String classField;
@@ -121,6 +122,18 @@ public class PluginMap {
         aliases = Collections.unmodifiableMap(mutableAliasMap);
         checkAliasesForCycles();
         inlinedAliases = Collections.unmodifiableSet(mutableInlinedAliasSet);
+        // resolve primary fields once here instead of on every decode
+        Map<String, String> mutablePrimaryFields = new HashMap<>();
+        for (String label : labels) {
+            if (!((label.charAt(0) != '_') || "_array".equals(label) || "_default".equals(label))) {
+                continue;
+            }
+            ConfigValue primaryField = aliasDefaults(label).get("_primary");
+            if (primaryField != null) {
+                mutablePrimaryFields.put(label, (String) primaryField.unwrapped());
+            }
+        }
+        primaryFields = Collections.unmodifiableMap(mutablePrimaryFields);
     }
 
     private PluginMap() {
@@ -128,6 +141,7 @@ public class PluginMap {
         map = ImmutableBiMap.of();
         aliases = Collections.emptyMap();
         inlinedAliases = Collections.emptySet();
+        primaryFields = Collections.emptyMap();
         classField = "class";
         category = "unknown";
         baseClass = null;
@@ -156,6 +170,11 @@ public class PluginMap {
         return defaults;
     }
 
+    /** The "_primary" field from the alias defaults, or null if there is none. */
+    @Nullable public String primaryField(String alias) {
+        return primaryFields.get(alias);
+    }
+
     @Nonnull public String classField() {
         return classField;
     }
@@ -0,0 +1,350 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.addthis.codec.annotations.FieldConfig;
+import com.addthis.codec.annotations.Pluggable;
+import com.addthis.codec.codables.Codable;
+import com.addthis.codec.reflection.GeneratedClassInfo;
+
+/**
+ * Optional annotation processor that writes a {@link GeneratedClassInfo} for every class that implements
+ * {@link Codable} or has a {@link Pluggable} annotation on itself or a parent class. The generated class
+ * lists the same fields that reflection would find and reads and writes them directly where the java
+ * access rules allow it, so encoding and decoding those fields does not need reflective access. The
+ * field types and {@link FieldConfig} flags are recorded too, and the described classes are listed in
+ * {@value GeneratedClassInfo#INDEX_RESOURCE}, so that class infos for them are built without scanning
+ * the class hierarchy and classes without metadata are never looked up.
+ *
+ * It is not registered as a service, so it only runs when asked for, eg. with
+ * {@code -processor com.addthis.codec.processor.CodecInfoProcessor} or through the
+ * {@code annotationProcessors} setting of the maven compiler plugin.
+ */
+@SupportedAnnotationTypes("*")
+public final class CodecInfoProcessor extends AbstractProcessor {
+
+    private final Set<String> generated = new HashSet<>();
+    private final Set<String> indexed = new TreeSet<>();
+
+    @Override public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element root : roundEnv.getRootElements()) {
+            visit(root);
+        }
+        if (roundEnv.processingOver() && !indexed.isEmpty()) {
+            writeIndex();
+        }
+        // never claim annotations; other processors may want them too
+        return false;
+    }
+
+    private void visit(Element element) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        if ((type.getKind() == ElementKind.CLASS) && isCandidate(type)) {
+            generate(type);
+        }
+        for (TypeElement member : ElementFilter.typesIn(type.getEnclosedElements())) {
+            visit(member);
+        }
+    }
+
+    private boolean isCandidate(TypeElement type) {
+        for (Element ptr = type; ptr instanceof TypeElement; ptr = ptr.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) ptr).getNestingKind();
+            if (ptr.getModifiers().contains(Modifier.PRIVATE) ||
+                ((nesting != NestingKind.TOP_LEVEL) && (nesting != NestingKind.MEMBER))) {
+                return false;
+            }
+        }
+        TypeElement codable = processingEnv.getElementUtils().getTypeElement(Codable.class.getName());
+        if (processingEnv.getTypeUtils().isAssignable(erasure(type.asType()), erasure(codable.asType()))) {
+            return true;
+        }
+        for (TypeElement ptr = type; ptr != null; ptr = superclass(ptr)) {
+            if (ptr.getAnnotation(Pluggable.class) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Same rules as CodableClassInfo: fields in subclasses hide parent fields of the same name. */
+    private static SortedMap<String, VariableElement> codableFields(TypeElement type) {
+        Set<String> seen = new HashSet<>();
+        SortedMap<String, VariableElement> fields = new TreeMap<>();
+        for (TypeElement ptr = type; ptr != null; ptr = superclass(ptr)) {
+            for (VariableElement field : ElementFilter.fieldsIn(ptr.getEnclosedElements())) {
+                String name = field.getSimpleName().toString();
+                if (seen.add(name) && isCodable(field)) {
+                    fields.put(name, field);
+                }
+            }
+        }
+        return fields;
+    }
+
+    private static boolean isCodable(VariableElement field) {
+        FieldConfig fieldConfig = field.getAnnotation(FieldConfig.class);
+        if (fieldConfig != null) {
+            return fieldConfig.codable();
+        }
+        Set<Modifier> modifiers = field.getModifiers();
+        return !modifiers.contains(Modifier.FINAL) && modifiers.contains(Modifier.PUBLIC);
+    }
+
+    private static TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement) ((DeclaredType) superclass).asElement();
+    }
+
+    private String packageName(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element).getQualifiedName().toString();
+    }
+
+    /** Whether code in the given package may name the class in a class literal. */
+    private boolean isVisibleFrom(TypeElement type, String packageName) {
+        boolean samePackage = packageName(type).equals(packageName);
+        for (Element ptr = type; ptr instanceof TypeElement; ptr = ptr.getEnclosingElement()) {
+            Set<Modifier> modifiers = ptr.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || (!samePackage && !modifiers.contains(Modifier.PUBLIC))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasAccessor(VariableElement field, String packageName) {
+        Set<Modifier> modifiers = field.getModifiers();
+        if (modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        return modifiers.contains(Modifier.PUBLIC) || packageName(field).equals(packageName);
+    }
+
+    private TypeMirror erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type);
+    }
+
+    /** The name {@link Class#getName()} returns for the erasure of the type. */
+    private String className(TypeMirror type) {
+        TypeMirror erased = erasure(type);
+        if (erased.getKind().isPrimitive()) {
+            return erased.getKind().name().toLowerCase();
+        } else if (erased.getKind() == TypeKind.ARRAY) {
+            return '[' + descriptor(((ArrayType) erased).getComponentType());
+        }
+        return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) erased).asElement())
+                            .toString();
+    }
+
+    private String descriptor(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN: return "Z";
+            case BYTE: return "B";
+            case CHAR: return "C";
+            case SHORT: return "S";
+            case INT: return "I";
+            case LONG: return "J";
+            case FLOAT: return "F";
+            case DOUBLE: return "D";
+            case ARRAY: return className(type);
+            default: return 'L' + className(type) + ';';
+        }
+    }
+
+    private static int flags(VariableElement field) {
+        FieldConfig fieldConfig = field.getAnnotation(FieldConfig.class);
+        if (fieldConfig == null) {
+            return 0;
+        }
+        return GeneratedClassInfo.flags(fieldConfig.readonly(), fieldConfig.writeonly(),
+                                        fieldConfig.codable(), fieldConfig.required());
+    }
+
+    private String boxedName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return erasure(type).toString();
+    }
+
+    private void generate(TypeElement type) {
+        String packageName = packageName(type);
+        String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String simpleName = packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1);
+        String infoName = simpleName + GeneratedClassInfo.SUFFIX;
+        String qualifiedInfoName = packageName.isEmpty() ? infoName : (packageName + '.' + infoName);
+        if (!generated.add(qualifiedInfoName)) {
+            return;
+        }
+        SortedMap<String, VariableElement> fields = codableFields(type);
+        for (VariableElement field : fields.values()) {
+            TypeElement owner = (TypeElement) field.getEnclosingElement();
+            if (!isVisibleFrom(owner, packageName)) {
+                processingEnv.getMessager().printMessage(
+                        Diagnostic.Kind.NOTE, "skipping codec info; " + owner + " is not visible from " +
+                                              packageName, type);
+                return;
+            }
+        }
+        String typeName = erasure(type.asType()).toString();
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedInfoName, type).openWriter()) {
+            writer.write(source(packageName, infoName, typeName, fields));
+            indexed.add(binaryName);
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "could not write " + qualifiedInfoName + ": " + ex, type);
+        }
+    }
+
+    private void writeIndex() {
+        try (Writer writer = processingEnv.getFiler()
+                                          .createResource(StandardLocation.CLASS_OUTPUT, "",
+                                                          GeneratedClassInfo.INDEX_RESOURCE)
+                                          .openWriter()) {
+            for (String binaryName : indexed) {
+                writer.write(binaryName);
+                writer.write('\n');
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "could not write " + GeneratedClassInfo.INDEX_RESOURCE + ": " + ex);
+        }
+    }
+
+    private String source(String packageName, String infoName, String typeName,
+                          SortedMap<String, VariableElement> fields) {
+        StringBuilder names = new StringBuilder();
+        StringBuilder owners = new StringBuilder();
+        StringBuilder types = new StringBuilder();
+        StringBuilder flags = new StringBuilder();
+        String[] signatureNames = new String[fields.size()];
+        String[] signatureOwners = new String[fields.size()];
+        String[] signatureTypes = new String[fields.size()];
+        int[] signatureFlags = new int[fields.size()];
+        StringBuilder accessible = new StringBuilder();
+        StringBuilder getters = new StringBuilder();
+        StringBuilder setters = new StringBuilder();
+        int index = 0;
+        for (Map.Entry<String, VariableElement> entry : fields.entrySet()) {
+            String name = entry.getKey();
+            VariableElement field = entry.getValue();
+            names.append(index == 0 ? "" : ", ").append('"').append(name).append('"');
+            owners.append(index == 0 ? "" : ", ").append(erasure(field.getEnclosingElement().asType())).append(".class");
+            signatureNames[index] = name;
+            signatureOwners[index] = className(field.getEnclosingElement().asType());
+            signatureTypes[index] = className(field.asType());
+            signatureFlags[index] = flags(field);
+            types.append(index == 0 ? "" : ", ").append('"').append(signatureTypes[index]).append('"');
+            flags.append(index == 0 ? "" : ", ").append(signatureFlags[index]);
+            if (hasAccessor(field, packageName)) {
+                accessible.append("            case ").append(index).append(":\n");
+                getters.append("            case ").append(index).append(": return ((")
+                       .append(typeName).append(") object).").append(name).append(";\n");
+                setters.append("            case ").append(index).append(": ((")
+                       .append(typeName).append(") object).").append(name).append(" = (")
+                       .append(boxedName(field.asType())).append(") value; return;\n");
+            }
+            index++;
+        }
+        StringBuilder source = new StringBuilder();
+        source.append("// generated by ").append(CodecInfoProcessor.class.getName()).append("; do not edit\n");
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n");
+        }
+        source.append("\n@SuppressWarnings({\"unchecked\", \"rawtypes\", \"static-access\"})\n")
+              .append("public final class ").append(infoName)
+              .append(" implements ").append(GeneratedClassInfo.class.getName()).append(" {\n\n")
+              .append("    private static final String[] NAMES = {").append(names).append("};\n")
+              .append("    private static final Class<?>[] OWNERS = {").append(owners).append("};\n")
+              .append("    private static final String[] TYPES = {").append(types).append("};\n")
+              .append("    private static final int[] FLAGS = {").append(flags).append("};\n\n")
+              .append("    @Override public Class<?> type() {\n")
+              .append("        return ").append(typeName).append(".class;\n")
+              .append("    }\n\n")
+              .append("    @Override public String[] fieldNames() {\n")
+              .append("        return NAMES.clone();\n")
+              .append("    }\n\n")
+              .append("    @Override public Class<?>[] fieldOwners() {\n")
+              .append("        return OWNERS.clone();\n")
+              .append("    }\n\n")
+              .append("    @Override public String[] fieldTypes() {\n")
+              .append("        return TYPES.clone();\n")
+              .append("    }\n\n")
+              .append("    @Override public int[] fieldFlags() {\n")
+              .append("        return FLAGS.clone();\n")
+              .append("    }\n\n")
+              .append("    @Override public int signatureHash() {\n")
+              .append("        return ")
+              .append(GeneratedClassInfo.signatureHash(signatureNames, signatureOwners, signatureTypes, signatureFlags))
+              .append(";\n")
+              .append("    }\n\n")
+              .append("    @Override public boolean hasAccessor(int index) {\n")
+              .append("        switch (index) {\n").append(accessible)
+              .append(accessible.length() > 0 ? "                return true;\n" : "")
+              .append("            default: return false;\n")
+              .append("        }\n")
+              .append("    }\n\n")
+              .append("    @Override public Object get(Object object, int index) {\n")
+              .append("        switch (index) {\n").append(getters)
+              .append("            default: throw new IllegalArgumentException(\"no accessor for field \" + index);\n")
+              .append("        }\n")
+              .append("    }\n\n")
+              .append("    @Override public void set(Object object, int index, Object value) {\n")
+              .append("        switch (index) {\n").append(setters)
+              .append("            default: throw new IllegalArgumentException(\"no accessor for field \" + index);\n")
+              .append("        }\n")
+              .append("    }\n")
+              .append("}\n");
+        return source.toString();
+    }
+}
@@ -21,7 +21,9 @@ import java.lang.reflect.Modifier;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
@@ -31,6 +33,8 @@ import com.addthis.codec.plugins.PluginMap;
 import com.addthis.codec.plugins.PluginRegistry;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableSortedMap;
 
 import com.typesafe.config.Config;
@@ -47,11 +51,21 @@ public class CodableClassInfo {
 
     @Nonnull private final Class<?>     baseClass;
     @Nonnull private final PluginMap    pluginMap;
-    @Nonnull private final Config       fieldDefaults;
+    @Nonnull private final Supplier<Config> fieldDefaults;
     @Nonnull private final ImmutableSortedMap<String, CodableFieldInfo> classData;
 
+    // flat copy of classData's values and a summary of them for serializers
+    @Nonnull private final CodableFieldInfo[] fieldArray;
+    private final int     primitiveByteWidth;
+    private final boolean hasContainers;
+
+    /** Uses the default registry and its config snapshot as the global defaults. */
     public CodableClassInfo(@Nonnull Class<?> clazz) {
-        this(clazz, ConfigFactory.load(), PluginRegistry.defaultRegistry());
+        this(clazz, PluginRegistry.defaultRegistry());
+    }
+
+    private CodableClassInfo(@Nonnull Class<?> clazz, @Nonnull PluginRegistry pluginRegistry) {
+        this(clazz, pluginRegistry.config(), pluginRegistry);
     }
 
     public CodableClassInfo(@Nonnull Class<?> clazz,
@@ -61,9 +75,12 @@ public class CodableClassInfo {
         // skip native classes
         if (Fields.isNative(clazz) || clazz.isArray()) {
             classData = ImmutableSortedMap.of();
+            fieldArray = new CodableFieldInfo[0];
+            primitiveByteWidth = 0;
+            hasContainers = false;
             baseClass = clazz;
             pluginMap = PluginMap.EMPTY;
-            fieldDefaults = ConfigFactory.empty();
+            fieldDefaults = Suppliers.ofInstance(ConfigFactory.empty());
             return;
         }
 
@@ -94,42 +111,34 @@ public class CodableClassInfo {
         pluginMap = findPluginMap;
         baseClass = findBaseClass;
 
-        // find all fields in the class and its parent classes, and aggregate any defaults
-        Map<String, Field> fields = new HashMap<>();
-        // slower than using unwrapped, mutable conversions but this preserves origins
-        ConfigObject buildDefaults = ConfigFactory.empty().root();
+        // defaults are only needed by some consumers, so aggregate them on first use
+        fieldDefaults = Suppliers.memoize(() -> buildFieldDefaults(clazz, globalDefaults));
 
-        Class<?> ptrForFields = clazz;
-        while (ptrForFields != null) {
-            String canonicalClassName = ptrForFields.getCanonicalName();
-            ConfigObject classDefaults;
-            if ((canonicalClassName != null) && globalDefaults.hasPath(canonicalClassName)) {
-                classDefaults = globalDefaults.getObject(canonicalClassName);
-            } else {
-                classDefaults = ConfigFactory.empty().root();
-            }
-            for (Field field : ptrForFields.getDeclaredFields()) {
-                if (fields.get(field.getName()) == null) {
-                    fields.put(field.getName(), field);
-                } else {
-                    classDefaults = classDefaults.withoutKey(field.getName());
-                    log.debug("({}) ignoring field in parent class ({}) with duplicate name ({})",
-                              clazz, ptrForFields, field.getName());
-                }
-            }
-            for (Map.Entry<String, ConfigValue> pair : classDefaults.entrySet()) {
-                if (!buildDefaults.containsKey(pair.getKey())) {
-                    buildDefaults = buildDefaults.withValue(pair.getKey(), pair.getValue());
-                }
-            }
-            ptrForFields = ptrForFields.getSuperclass();
+        // take the codable fields from compile time metadata if there is any, otherwise scan the class
+        Map<String, CodableFieldInfo> buildClassData = null;
+        GeneratedClassInfo generated = Fields.generatedClassInfo(clazz);
+        if (generated != null) {
+            buildClassData = buildFieldInfoMap(generated);
+        }
+        if (buildClassData == null) {
+            buildClassData = buildFieldInfoMap(declaredFields(clazz));
         }
-        fieldDefaults = buildDefaults.toConfig();
-
-        // turn all the found fields into CodableFieldInfo objects
-        Map<String, CodableFieldInfo> buildClassData = buildFieldInfoMap(fields.values());
         classData = ImmutableSortedMap.<String, CodableFieldInfo>naturalOrder()
                                       .putAll(buildClassData).build();
+        fieldArray = classData.values().toArray(new CodableFieldInfo[classData.size()]);
+        int width = 0;
+        boolean containers = false;
+        for (CodableFieldInfo field : fieldArray) {
+            int fieldWidth = field.isArray() ? -1 : primitiveByteWidth(field.getTypeOrComponentType());
+            if ((fieldWidth < 0) || (width < 0)) {
+                width = -1;
+            } else {
+                width += fieldWidth;
+            }
+            containers |= field.isArray() || field.isCollection() || field.isMap();
+        }
+        primitiveByteWidth = width;
+        hasContainers = containers;
     }
 
     @Nonnull public PluginMap getPluginMap() {
@@ -137,7 +146,7 @@ public class CodableClassInfo {
     }
 
     @Nonnull public Config getFieldDefaults() {
-        return fieldDefaults;
+        return fieldDefaults.get();
     }
 
     @Nonnull public Class<?> getBaseClass() {
@@ -176,11 +185,86 @@ public class CodableClassInfo {
         return classData.values();
     }
 
+    /** The field at the given index, in the same order as {@link #values()}. For indexed loops. */
+    @Nonnull public CodableFieldInfo field(int index) {
+        return fieldArray[index];
+    }
+
+    /** Copy of the fields in the same order as {@link #values()}. */
+    @Nonnull public CodableFieldInfo[] fieldArray() {
+        return fieldArray.clone();
+    }
+
+    /** True if there is at least one field and every field is of a primitive (not boxed) type. */
+    public boolean isAllPrimitive() {
+        return (fieldArray.length > 0) && (primitiveByteWidth >= 0);
+    }
+
+    /**
+     * Sum of the natural big-endian sizes of all fields (boolean and byte count as one byte), or -1
+     * if any field is not of a primitive type.
+     */
+    public int primitiveByteWidth() {
+        return primitiveByteWidth;
+    }
+
+    /** True if any field is an array, collection, or map. */
+    public boolean hasContainers() {
+        return hasContainers;
+    }
+
     /** Immutable view of codable fields as a map of field names to {@link CodableFieldInfo}s. */
     @Nonnull public Map<String, CodableFieldInfo> fields() {
         return classData;
     }
 
+    private static int primitiveByteWidth(Class<?> type) {
+        if ((type == boolean.class) || (type == byte.class)) {
+            return 1;
+        } else if ((type == short.class) || (type == char.class)) {
+            return 2;
+        } else if ((type == int.class) || (type == float.class)) {
+            return 4;
+        } else if ((type == long.class) || (type == double.class)) {
+            return 8;
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * Aggregate global defaults for the class and its parent classes. A parent's default for a field
+     * is dropped if a subclass declares a field with the same name (the parent's field is ignored).
+     */
+    private static Config buildFieldDefaults(Class<?> clazz, Config globalDefaults) {
+        Set<String> seenFields = new HashSet<>();
+        // slower than using unwrapped, mutable conversions but this preserves origins
+        ConfigObject buildDefaults = ConfigFactory.empty().root();
+
+        Class<?> ptrForFields = clazz;
+        while (ptrForFields != null) {
+            String canonicalClassName = ptrForFields.getCanonicalName();
+            ConfigObject classDefaults;
+            if ((canonicalClassName != null) && globalDefaults.hasPath(canonicalClassName)) {
+                classDefaults = globalDefaults.getObject(canonicalClassName);
+            } else {
+                classDefaults = ConfigFactory.empty().root();
+            }
+            for (Field field : ptrForFields.getDeclaredFields()) {
+                if (!seenFields.add(field.getName())) {
+                    classDefaults = classDefaults.withoutKey(field.getName());
+                }
+            }
+            for (Map.Entry<String, ConfigValue> pair : classDefaults.entrySet()) {
+                if (!buildDefaults.containsKey(pair.getKey())) {
+                    buildDefaults = buildDefaults.withValue(pair.getKey(), pair.getValue());
+                }
+            }
+            ptrForFields = ptrForFields.getSuperclass();
+        }
+        return buildDefaults.toConfig();
+    }
+
     /**
      * Decide whether it is okay to read/ write a field. If configured via an annotation on the field, use that.
      * Otherwise return true only if the field is both public and non-final.
@@ -194,6 +278,24 @@ public class CodableClassInfo {
         return !Modifier.isFinal(modifierBitSet) && Modifier.isPublic(modifierBitSet);
     }
 
+    /** All fields in the class and its parent classes, skipping parent fields hidden by a subclass field. */
+    @Nonnull private static Collection<Field> declaredFields(Class<?> clazz) {
+        Map<String, Field> fields = new HashMap<>();
+        Class<?> ptrForFields = clazz;
+        while (ptrForFields != null) {
+            for (Field field : ptrForFields.getDeclaredFields()) {
+                if (fields.get(field.getName()) == null) {
+                    fields.put(field.getName(), field);
+                } else {
+                    log.debug("({}) ignoring field in parent class ({}) with duplicate name ({})",
+                              clazz, ptrForFields, field.getName());
+                }
+            }
+            ptrForFields = ptrForFields.getSuperclass();
+        }
+        return fields.values();
+    }
+
     @Nonnull private static Map<String, CodableFieldInfo> buildFieldInfoMap(Iterable<Field> fields) {
         SortedMap<String, CodableFieldInfo> buildClassData = new TreeMap<>();
         for (Field field : fields) {
@@ -205,4 +307,46 @@ public class CodableClassInfo {
         return buildClassData;
     }
 
+    /**
+     * Builds the field infos from generated metadata, looking up only the listed fields and taking their
+     * {@link FieldConfig} flags as recorded. Returns null if a listed field is missing or has another type,
+     * or if the metadata does not match its own signature hash, so that stale or hand edited metadata falls
+     * back to reflection.
+     */
+    @Nullable private static Map<String, CodableFieldInfo> buildFieldInfoMap(GeneratedClassInfo generated) {
+        String[] names = generated.fieldNames();
+        Class<?>[] owners = generated.fieldOwners();
+        String[] types = generated.fieldTypes();
+        int[] flags = generated.fieldFlags();
+        if ((owners.length != names.length) || (types.length != names.length) || (flags.length != names.length)) {
+            log.warn("ignoring malformed generated class info for {}", generated.type());
+            return null;
+        }
+        String[] ownerNames = new String[owners.length];
+        SortedMap<String, CodableFieldInfo> buildClassData = new TreeMap<>();
+        for (int index = 0; index < names.length; index++) {
+            ownerNames[index] = owners[index].getName();
+            Field field;
+            try {
+                field = owners[index].getDeclaredField(names[index]);
+            } catch (NoSuchFieldException ex) {
+                log.warn("ignoring stale generated class info for {}; {} has no field {}",
+                         generated.type(), owners[index], names[index]);
+                return null;
+            }
+            if (!field.getType().getName().equals(types[index])) {
+                log.warn("ignoring stale generated class info for {}; field {} is a {}, not {}",
+                         generated.type(), names[index], field.getType().getName(), types[index]);
+                return null;
+            }
+            GeneratedClassInfo accessor = generated.hasAccessor(index) ? generated : null;
+            buildClassData.put(names[index], new CodableFieldInfo(field, flags[index], accessor, index));
+        }
+        if (GeneratedClassInfo.signatureHash(names, ownerNames, types, flags) != generated.signatureHash()) {
+            log.warn("ignoring generated class info for {}; its fields do not match its signature hash",
+                     generated.type());
+            return null;
+        }
+        return buildClassData;
+    }
 }
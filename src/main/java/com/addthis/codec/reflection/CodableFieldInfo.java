@@ -55,36 +55,57 @@ public final class CodableFieldInfo {
     @Nonnull private final Class<?> typeOrComponentType;
     private final int bits;
 
-    @Nullable private final FieldConfig fieldConfig;
-    @Nullable private final Type[]      genTypes;
-    @Nullable private final boolean[]   genArray;
+    /** Generics info, built on first use since many consumers never ask for it. */
+    @Nullable private volatile Generics generics;
+
+    // generated accessor used in place of field.get/ field.set when present
+    @Nullable private final GeneratedClassInfo accessor;
+    private final int accessorIndex;
 
     public CodableFieldInfo(@Nonnull Field field) {
+        this(field, configFlags(field), null, -1);
+    }
+
+    /**
+     * @param configBits the {@link FieldConfig} derived bits of the field, as computed by
+     *                   {@link #configFlags(Field)} or taken from generated metadata
+     */
+    CodableFieldInfo(@Nonnull Field field, int configBits,
+                     @Nullable GeneratedClassInfo accessor, int accessorIndex) {
         this.field = field;
+        this.accessor = accessor;
+        this.accessorIndex = accessorIndex;
         field.setAccessible(true);
-        fieldConfig = field.getAnnotation(FieldConfig.class);
 
         Class<?> type = field.getType();
         boolean array = type.isArray();
         if (array) {
             typeOrComponentType = type.getComponentType();
-            this.bits = cacheFlags(CodableFieldInfo.ARRAY);
+            this.bits = cacheFlags(CodableFieldInfo.ARRAY | configBits);
         } else {
             typeOrComponentType = type;
-            this.bits = cacheFlags(0);
+            this.bits = cacheFlags(configBits);
         }
-        // extract generics info
-        if (!Fields.isNative(typeOrComponentType)) {
-            genTypes = Fields.collectTypes(typeOrComponentType, field.getGenericType());
-        } else {
-            genTypes = null;
+    }
+
+    /** READONLY, WRITEONLY, CODABLE, and REQUIRED bits set by the field's {@link FieldConfig}, if any. */
+    static int configFlags(@Nonnull Field field) {
+        FieldConfig fieldConfig = field.getAnnotation(FieldConfig.class);
+        if (fieldConfig == null) {
+            return 0;
         }
-        if (genTypes == null) {
-            genArray = null;
-        } else {
-            genArray = new boolean[genTypes.length];
-            mutateGenericTypes(genTypes, genArray);
+        return GeneratedClassInfo.flags(fieldConfig.readonly(), fieldConfig.writeonly(),
+                                        fieldConfig.codable(), fieldConfig.required());
+    }
+
+    private Generics generics() {
+        Generics result = generics;
+        if (result == null) {
+            // racy but harmless; every thread builds the same immutable value
+            result = new Generics(field, typeOrComponentType);
+            generics = result;
         }
+        return result;
     }
 
     private int cacheFlags(int externalBits) {
@@ -107,20 +128,6 @@ public final class CodableFieldInfo {
         if (Fields.isNative(typeOrComponentType)) {
             partialBits |= CodableFieldInfo.NATIVE;
         }
-        if (fieldConfig != null) {
-            if (fieldConfig.readonly()) {
-                partialBits |= CodableFieldInfo.READONLY;
-            }
-            if (fieldConfig.writeonly()) {
-                partialBits |= CodableFieldInfo.WRITEONLY;
-            }
-            if (fieldConfig.codable()) {
-                partialBits |= CodableFieldInfo.CODABLE;
-            }
-            if (fieldConfig.required()) {
-                partialBits |= CodableFieldInfo.REQUIRED;
-            }
-        }
         return partialBits;
     }
 
@@ -137,12 +144,39 @@ public final class CodableFieldInfo {
     }
 
     @Nullable public Type[] getGenericTypes() {
-        return genTypes;
+        return generics().genTypes;
+    }
+
+    /** Full type of the field, including nested container element types. */
+    @Nonnull public TypeDescriptor getTypeDescriptor() {
+        return generics().typeDescriptor;
+    }
+
+    private static final class Generics {
+        @Nullable final Type[]    genTypes;
+        @Nullable final boolean[] genArray;
+        @Nonnull final TypeDescriptor typeDescriptor;
+
+        Generics(Field field, Class<?> typeOrComponentType) {
+            // extract generics info
+            if (!Fields.isNative(typeOrComponentType)) {
+                genTypes = Fields.collectTypes(typeOrComponentType, field.getGenericType());
+            } else {
+                genTypes = null;
+            }
+            if (genTypes == null) {
+                genArray = null;
+            } else {
+                genArray = new boolean[genTypes.length];
+                mutateGenericTypes(genTypes, genArray);
+            }
+            typeDescriptor = TypeDescriptor.of(field.getGenericType());
+        }
     }
 
     // interacts with the ill-defined generic support
-    private void mutateGenericTypes(@Nonnull final Type[] collectedTypes,
-                                    @Nonnull final boolean[] genericFlags) {
+    private static void mutateGenericTypes(@Nonnull final Type[] collectedTypes,
+                                           @Nonnull final boolean[] genericFlags) {
         for (int i = 0; i < collectedTypes.length; i++) {
             Type currentType = collectedTypes[i];
             if (currentType instanceof GenericArrayType) {
@@ -162,30 +196,39 @@ public final class CodableFieldInfo {
     }
 
     @Nullable public Class<?> getCollectionClass() {
-        return ((genTypes != null) && (genTypes.length == 1)) ? (Class<?>) genTypes[0] : null;
+        Generics g = generics();
+        return ((g.genTypes != null) && (g.genTypes.length == 1)) ? (Class<?>) g.genTypes[0] : null;
     }
 
     @Nullable public Class<?> getMapKeyClass() {
-        return ((genTypes != null) && (genTypes.length == 2)) ? (Class<?>) genTypes[0] : null;
+        Generics g = generics();
+        return ((g.genTypes != null) && (g.genTypes.length == 2)) ? (Class<?>) g.genTypes[0] : null;
     }
 
     @Nullable public Class<?> getMapValueClass() {
-        return ((genTypes != null) && (genTypes.length == 2)) ? (Class<?>) genTypes[1] : null;
+        Generics g = generics();
+        return ((g.genTypes != null) && (g.genTypes.length == 2)) ? (Class<?>) g.genTypes[1] : null;
     }
 
     public boolean isCollectionArray() {
-        return ((genArray != null) && (genArray.length == 1)) ? genArray[0] : false;
+        Generics g = generics();
+        return ((g.genArray != null) && (g.genArray.length == 1)) ? g.genArray[0] : false;
     }
 
     public boolean isMapKeyArray() {
-        return ((genArray != null) && (genArray.length == 2)) ? genArray[0] : false;
+        Generics g = generics();
+        return ((g.genArray != null) && (g.genArray.length == 2)) ? g.genArray[0] : false;
     }
 
     public boolean isMapValueArray() {
-        return ((genArray != null) && (genArray.length == 2)) ? genArray[1] : false;
+        Generics g = generics();
+        return ((g.genArray != null) && (g.genArray.length == 2)) ? g.genArray[1] : false;
     }
 
     public Object get(Object src) {
+        if (accessor != null) {
+            return accessor.get(src, accessorIndex);
+        }
         try {
             return field.get(src);
         } catch (IllegalAccessException e) {
@@ -206,7 +249,11 @@ public final class CodableFieldInfo {
             }
             return;
         }
-        field.set(dst, value);
+        if (accessor != null) {
+            accessor.set(dst, accessorIndex, value);
+        } else {
+            field.set(dst, value);
+        }
     }
 
     public void set(@Nonnull Object dst, @Nullable Object value) {
@@ -218,7 +265,11 @@ public final class CodableFieldInfo {
             return;
         }
         try {
-            field.set(dst, value);
+            if (accessor != null) {
+                accessor.set(dst, accessorIndex, value);
+            } else {
+                field.set(dst, value);
+            }
         } catch (RuntimeException ex) {
             throw ex;
         } catch (Exception ex) {
@@ -3,16 +3,45 @@ package com.addthis.codec.reflection;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import java.net.URL;
+
+import java.nio.charset.StandardCharsets;
+
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /*
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -30,20 +59,160 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public final class Fields {
     private Fields() {}
 
-    private static final ConcurrentMap<Class<?>, CodableClassInfo> fieldMaps =
-            new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(Fields.class);
+
+    public static final String WEAK_CLASS_KEYS_PATH = "addthis.codec.reflection.weak-class-keys";
 
     public static CodableClassInfo getClassFieldMap(Class<?> clazz) {
-        CodableClassInfo fieldMap = fieldMaps.get(clazz);
-        if (fieldMap == null) {
-            fieldMap = new CodableClassInfo(clazz);
-            fieldMaps.put(clazz, fieldMap);
+        try {
+            return ClassInfoCache.fieldMaps.getUnchecked(clazz);
+        } catch (UncheckedExecutionException | ExecutionError ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw ex;
         }
-        return fieldMap;
     }
 
+    private static final AtomicInteger generation = new AtomicInteger();
+
     public static void flushClassFieldMaps() {
-        fieldMaps.clear();
+        ClassInfoCache.fieldMaps.invalidateAll();
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Counter bumped on every {@link #flushClassFieldMaps()}. Callers that keep their own
+     * references to {@link CodableClassInfo} objects can compare it to know when to drop them.
+     */
+    public static int generation() {
+        return generation.get();
+    }
+
+    /**
+     * True if the class info cache only weakly references classes (see {@value #WEAK_CLASS_KEYS_PATH}).
+     * Callers should then avoid holding on to classes or class infos in long lived structures of
+     * their own, since that would keep class loaders from being unloaded.
+     */
+    public static boolean weakClassKeys() {
+        return ClassInfoCache.WEAK_CLASS_KEYS;
+    }
+
+    /** Hit, miss, load time, and eviction counts for the class info cache. */
+    public static CacheStats classFieldMapStats() {
+        return ClassInfoCache.fieldMaps.stats();
+    }
+
+    /**
+     * Lazily initialized so that the static helpers here do not force the global config to load.
+     * The loading cache makes sure each class info is built only once, even when many threads
+     * ask for it at the same time.
+     */
+    private static final class ClassInfoCache {
+        static final boolean WEAK_CLASS_KEYS =
+                PluginRegistry.defaultRegistry().config().getBoolean(WEAK_CLASS_KEYS_PATH);
+
+        static final Timer buildTimer =
+                Metrics.newTimer(Fields.class, "classInfoBuild", TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+
+        static final LoadingCache<Class<?>, CodableClassInfo> fieldMaps = newCache();
+
+        static {
+            Metrics.newGauge(Fields.class, "classInfoCacheSize", new Gauge<Long>() {
+                @Override public Long value() {
+                    return fieldMaps.size();
+                }
+            });
+            Metrics.newGauge(Fields.class, "classInfoCacheHits", new Gauge<Long>() {
+                @Override public Long value() {
+                    return fieldMaps.stats().hitCount();
+                }
+            });
+            Metrics.newGauge(Fields.class, "classInfoCacheMisses", new Gauge<Long>() {
+                @Override public Long value() {
+                    return fieldMaps.stats().missCount();
+                }
+            });
+        }
+
+        private static LoadingCache<Class<?>, CodableClassInfo> newCache() {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().recordStats();
+            if (WEAK_CLASS_KEYS) {
+                // each class info refers back to its class, so values must be collectable too
+                builder = builder.weakKeys().softValues();
+            }
+            return builder.build(new CacheLoader<Class<?>, CodableClassInfo>() {
+                @Override public CodableClassInfo load(Class<?> clazz) {
+                    TimerContext timerContext = buildTimer.time();
+                    try {
+                        return new CodableClassInfo(clazz);
+                    } finally {
+                        timerContext.stop();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Compile time metadata for the class, if {@link com.addthis.codec.processor.CodecInfoProcessor}
+     * ran over it; otherwise null. Only classes listed in a {@value GeneratedClassInfo#INDEX_RESOURCE}
+     * resource are looked up, so classes without metadata cost a set lookup rather than a failed
+     * class load.
+     */
+    @Nullable static GeneratedClassInfo generatedClassInfo(@Nonnull Class<?> clazz) {
+        ClassLoader loader = clazz.getClassLoader();
+        if ((loader == null) || !GeneratedIndexes.indexes.getUnchecked(loader).contains(clazz.getName())) {
+            return null;
+        }
+        try {
+            Class<?> infoClass = Class.forName(clazz.getName() + GeneratedClassInfo.SUFFIX, true, loader);
+            GeneratedClassInfo info = (GeneratedClassInfo) infoClass.newInstance();
+            if (info.type() == clazz) {
+                return info;
+            }
+            log.warn("ignoring generated class info {} since it describes {}", infoClass, info.type());
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError ex) {
+            log.warn("ignoring unusable generated class info for {}", clazz, ex);
+        }
+        return null;
+    }
+
+    /** Classes listed in the generated class info indexes visible to each class loader. */
+    private static final class GeneratedIndexes {
+        static final LoadingCache<ClassLoader, Set<String>> indexes =
+                CacheBuilder.newBuilder().weakKeys().build(new CacheLoader<ClassLoader, Set<String>>() {
+                    @Override public Set<String> load(ClassLoader loader) {
+                        return readIndexes(loader);
+                    }
+                });
+
+        private static Set<String> readIndexes(ClassLoader loader) {
+            Set<String> names = new HashSet<>();
+            try {
+                Enumeration<URL> resources = loader.getResources(GeneratedClassInfo.INDEX_RESOURCE);
+                while (resources.hasMoreElements()) {
+                    URL resource = resources.nextElement();
+                    try (InputStream in = resource.openStream();
+                         BufferedReader reader = new BufferedReader(
+                                 new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            line = line.trim();
+                            if (!line.isEmpty() && (line.charAt(0) != '#')) {
+                                names.add(line);
+                            }
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                log.warn("could not read generated class info indexes from {}", loader, ex);
+            }
+            return names;
+        }
     }
 
     public static boolean isNative(@Nonnull Class<?> type) {
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.reflection;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Compile time metadata for one class, normally written by
+ * {@link com.addthis.codec.processor.CodecInfoProcessor}. Implementations are named after the binary
+ * name of the class they describe plus {@link #SUFFIX}, live in the same package, have a public
+ * no-arg constructor, and are listed in an {@value #INDEX_RESOURCE} resource so that classes without
+ * metadata are never looked up.
+ *
+ * When one is found, {@link CodableClassInfo} takes the field list, field types and
+ * {@link com.addthis.codec.annotations.FieldConfig} flags from it instead of scanning the class
+ * hierarchy and its annotations, and field reads and writes go through its accessors where available.
+ * Only the listed fields are looked up, and the metadata is ignored with a warning if any of them is
+ * missing, has a different type, or does not match {@link #signatureHash()}. Fields added to a class
+ * after its metadata was generated are not noticed, so the processor has to run on every build of
+ * the class.
+ *
+ * Fields are indexed in the order of {@link #fieldNames()}, which must be sorted by name and list
+ * exactly the fields that reflection would consider codable.
+ */
+@Beta
+public interface GeneratedClassInfo {
+
+    String SUFFIX = "$$CodecInfo";
+
+    /** Class path resource listing the binary names of classes with metadata, one per line. */
+    String INDEX_RESOURCE = "META-INF/addthis-codec/generated-class-infos";
+
+    /** The class this metadata describes. */
+    Class<?> type();
+
+    /** Names of the codable fields, sorted. */
+    String[] fieldNames();
+
+    /** The declaring class of each field in {@link #fieldNames()}. */
+    Class<?>[] fieldOwners();
+
+    /** The erased type of each field, as returned by {@link Class#getName()}. */
+    String[] fieldTypes();
+
+    /** The {@link com.addthis.codec.annotations.FieldConfig} derived flags of each field; see {@link #flags}. */
+    int[] fieldFlags();
+
+    /** {@link #signatureHash(String[], String[], String[], int[])} of the fields as seen at compile time. */
+    int signatureHash();
+
+    /** True if {@link #get} and {@link #set} support the field; otherwise reflection is used. */
+    boolean hasAccessor(int index);
+
+    Object get(Object object, int index);
+
+    void set(Object object, int index, Object value);
+
+    /**
+     * {@link CodableFieldInfo} bits (READONLY, WRITEONLY, CODABLE, and REQUIRED) set by the field's
+     * annotation values. Shared by the processor and reflection so that both agree.
+     */
+    static int flags(boolean readonly, boolean writeonly, boolean codable, boolean required) {
+        int flags = 0;
+        if (readonly) {
+            flags |= CodableFieldInfo.READONLY;
+        }
+        if (writeonly) {
+            flags |= CodableFieldInfo.WRITEONLY;
+        }
+        if (codable) {
+            flags |= CodableFieldInfo.CODABLE;
+        }
+        if (required) {
+            flags |= CodableFieldInfo.REQUIRED;
+        }
+        return flags;
+    }
+
+    /** Hash of the field names, declaring class names, type names, and flags, in field order. */
+    static int signatureHash(String[] names, String[] owners, String[] types, int[] flags) {
+        StringBuilder signature = new StringBuilder();
+        for (int i = 0; i < names.length; i++) {
+            signature.append(owners[i]).append('.').append(names[i]).append(':')
+                     .append(types[i]).append(':').append(flags[i]).append(';');
+        }
+        return signature.toString().hashCode();
+    }
+}
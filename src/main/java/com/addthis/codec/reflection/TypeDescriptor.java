@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.reflection;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Fully resolved shape of a (possibly generic) type, as a tree of containers. Unlike
+ * {@link CodableFieldInfo#getCollectionClass()} and friends, which only look one level deep, this
+ * keeps going, so a {@code Map<String, List<Foo>>} has a map node whose element is a collection node
+ * whose element is a value node for {@code Foo}.
+ *
+ * Built once per field when its {@link CodableFieldInfo} is created, so serializers can dispatch on
+ * {@link #getKind()} instead of inspecting types while encoding or decoding.
+ */
+@Beta
+public final class TypeDescriptor {
+
+    public enum Kind {
+        /** Anything that is not a container: natives, enums, codables, and unresolvable types. */
+        VALUE,
+        ARRAY,
+        COLLECTION,
+        MAP
+    }
+
+    private static final TypeDescriptor OBJECT = new TypeDescriptor(Kind.VALUE, Object.class, null, null);
+
+    @Nonnull private final Kind kind;
+    @Nonnull private final Class<?> rawType;
+    @Nullable private final TypeDescriptor keyType;
+    @Nullable private final TypeDescriptor elementType;
+
+    private TypeDescriptor(@Nonnull Kind kind, @Nonnull Class<?> rawType,
+                           @Nullable TypeDescriptor keyType, @Nullable TypeDescriptor elementType) {
+        this.kind = kind;
+        this.rawType = rawType;
+        this.keyType = keyType;
+        this.elementType = elementType;
+    }
+
+    @Nonnull public Kind getKind() {
+        return kind;
+    }
+
+    /** The erased type. For arrays this is the array class itself. */
+    @Nonnull public Class<?> getRawType() {
+        return rawType;
+    }
+
+    /** Key node of a map; null for anything else. */
+    @Nullable public TypeDescriptor getKeyType() {
+        return keyType;
+    }
+
+    /** Component of an array, element of a collection, or value of a map; null for values. */
+    @Nullable public TypeDescriptor getElementType() {
+        return elementType;
+    }
+
+    /** True for collections and maps (but not arrays). */
+    public boolean isContainer() {
+        return (kind == Kind.COLLECTION) || (kind == Kind.MAP);
+    }
+
+    @Override public String toString() {
+        switch (kind) {
+            case ARRAY:
+                return elementType + "[]";
+            case COLLECTION:
+                return rawType.getSimpleName() + '<' + elementType + '>';
+            case MAP:
+                return rawType.getSimpleName() + '<' + keyType + ", " + elementType + '>';
+            default:
+                return rawType.getSimpleName();
+        }
+    }
+
+    @Nonnull public static TypeDescriptor of(@Nonnull Type type) {
+        return of(type, new HashSet<>());
+    }
+
+    /**
+     * @param visiting raw container classes whose type arguments come from their own superclasses and
+     *                 are being resolved further up the stack; guards against eg. {@code Node extends
+     *                 ArrayList<Node>}, which is left as a value node at the point it recurses
+     */
+    @Nonnull private static TypeDescriptor of(@Nonnull Type type, @Nonnull Set<Class<?>> visiting) {
+        if (type instanceof Class) {
+            Class<?> clazz = (Class<?>) type;
+            if (clazz.isArray()) {
+                return new TypeDescriptor(Kind.ARRAY, clazz, null, of(clazz.getComponentType(), visiting));
+            }
+            return ofContainer(clazz, type, null, visiting);
+        } else if (type instanceof GenericArrayType) {
+            TypeDescriptor component = of(((GenericArrayType) type).getGenericComponentType(), visiting);
+            Class<?> arrayClass = Array.newInstance(component.rawType, 0).getClass();
+            return new TypeDescriptor(Kind.ARRAY, arrayClass, null, component);
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Class<?> raw = (Class<?>) parameterized.getRawType();
+            return ofContainer(raw, type, parameterized.getActualTypeArguments(), visiting);
+        } else if (type instanceof WildcardType) {
+            return of(((WildcardType) type).getUpperBounds()[0], visiting);
+        } else if (type instanceof TypeVariable) {
+            return of(((TypeVariable<?>) type).getBounds()[0], visiting);
+        } else {
+            return OBJECT;
+        }
+    }
+
+    @Nonnull private static TypeDescriptor ofContainer(@Nonnull Class<?> raw, @Nonnull Type type,
+                                                       @Nullable Type[] arguments,
+                                                       @Nonnull Set<Class<?>> visiting) {
+        boolean map = Map.class.isAssignableFrom(raw);
+        if (!map && !Collection.class.isAssignableFrom(raw)) {
+            return new TypeDescriptor(Kind.VALUE, raw, null, null);
+        }
+        int expected = map ? 2 : 1;
+        boolean direct = (arguments != null) && (arguments.length == expected);
+        Type[] resolved;
+        if (direct) {
+            resolved = arguments;
+        } else {
+            // subclasses like 'FooList extends ArrayList<Foo>' get their arguments from a superclass
+            if (!visiting.add(raw)) {
+                return new TypeDescriptor(Kind.VALUE, raw, null, null);
+            }
+            resolved = Fields.collectTypes(raw, type);
+        }
+        try {
+            if (map) {
+                boolean known = (resolved != null) && (resolved.length == 2);
+                return new TypeDescriptor(Kind.MAP, raw,
+                                          known ? of(resolved[0], visiting) : OBJECT,
+                                          known ? of(resolved[1], visiting) : OBJECT);
+            } else {
+                boolean known = (resolved != null) && (resolved.length == 1);
+                return new TypeDescriptor(Kind.COLLECTION, raw, null, known ? of(resolved[0], visiting) : OBJECT);
+            }
+        } finally {
+            if (!direct) {
+                visiting.remove(raw);
+            }
+        }
+    }
+}
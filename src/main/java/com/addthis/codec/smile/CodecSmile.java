@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.smile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.addthis.codec.Codec;
+import com.addthis.codec.jackson.CodecJackson;
+import com.addthis.codec.jackson.Jackson;
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Binary Codec using jackson's smile format with the same plugins, defaults, and other
+ * settings as {@link Jackson#defaultCodec()}. Intended as the supported replacement for
+ * the deprecated Bin2 format. Repeated field names and short string values are written
+ * once and then back-referenced.
+ */
+public final class CodecSmile implements Codec {
+
+    public static final CodecSmile INSTANCE = new CodecSmile(Jackson.defaultCodec().getPluginRegistry());
+
+    /** Smile header (':)\n' plus a version/ flags byte) followed by the null token. */
+    private static final int HEADER_LENGTH = 4;
+    private static final byte NULL_TOKEN = 0x21;
+
+    private final ObjectMapper objectMapper;
+
+    public CodecSmile(PluginRegistry pluginRegistry) {
+        SmileFactory smileFactory = new SmileFactory();
+        smileFactory.configure(SmileGenerator.Feature.WRITE_HEADER, true);
+        smileFactory.configure(SmileGenerator.Feature.CHECK_SHARED_NAMES, true);
+        smileFactory.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES, true);
+        this.objectMapper = Jackson.newObjectMapper(pluginRegistry, smileFactory);
+    }
+
+    public CodecSmile(CodecJackson codecJackson) {
+        this(codecJackson.getPluginRegistry());
+    }
+
+    public ObjectMapper getObjectMapper() {
+        return objectMapper;
+    }
+
+    @Override
+    public byte[] encode(Object obj) throws IOException {
+        return objectMapper.writeValueAsBytes(obj);
+    }
+
+    @Override
+    public <T> T decode(T shell, byte[] data) throws IOException {
+        return objectMapper.readerForUpdating(shell).readValue(data);
+    }
+
+    @Override
+    public <T> T decode(Class<T> type, byte[] data) throws IOException {
+        return objectMapper.readValue(data, type);
+    }
+
+    @Override
+    public boolean storesNull(byte[] data) {
+        return (data.length == (HEADER_LENGTH + 1)) && (data[HEADER_LENGTH] == NULL_TOKEN);
+    }
+
+    /** Write the object directly to the stream. The stream is left open. */
+    public void encode(Object obj, OutputStream out) throws IOException {
+        objectMapper.writer()
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .writeValue(out, obj);
+    }
+
+    /** Read a value of the given type from the stream. The stream is left open. */
+    public <T> T decode(Class<T> type, InputStream in) throws IOException {
+        return objectMapper.readerFor(type)
+                           .without(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+                           .readValue(in);
+    }
+
+    /** Read a value from the stream into the shell object. The stream is left open. */
+    public <T> T decode(T shell, InputStream in) throws IOException {
+        return objectMapper.readerForUpdating(shell)
+                           .without(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+                           .readValue(in);
+    }
+}
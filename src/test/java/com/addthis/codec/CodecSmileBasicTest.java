@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import com.addthis.codec.letters.CC;
+import com.addthis.codec.smile.CodecSmile;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CodecSmileBasicTest extends CodecBasicTests {
+
+    @Override public Codec getCodec() {
+        CodecSmile.INSTANCE.getObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return CodecSmile.INSTANCE;
+    }
+
+    @Test
+    public void storesNull() throws Exception {
+        assertTrue(codec.storesNull(codec.encode(null)));
+        assertFalse(codec.storesNull(byteEncodedSample));
+    }
+
+    @Test
+    public void streams() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CodecSmile.INSTANCE.encode(sampleBean, out);
+        assertEquals(byteEncodedSample.length, out.size());
+        ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+        assertEquals(sampleBean, CodecSmile.INSTANCE.decode(CC.class, in));
+    }
+}
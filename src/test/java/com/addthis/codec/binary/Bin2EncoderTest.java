@@ -0,0 +1,260 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.ByteArrayOutputStream;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.addthis.codec.codables.Codable;
+import com.addthis.codec.codables.ConcurrentCodable;
+import com.addthis.codec.codables.SnapshotCodable;
+import com.addthis.codec.codables.SuperCodable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class Bin2EncoderTest {
+
+    public static class Item implements Codable {
+        public int id;
+        public String name;
+        public List<String> tags = new ArrayList<>();
+    }
+
+    /** Encodes a nested item during its own encode, which reenters the per-thread encoder. */
+    public static class Reentrant implements SuperCodable {
+        public Item item;
+        public byte[] itemBytes;
+
+        @Override public void preEncode() {
+            try {
+                itemBytes = CodecBin2.encodeBytes(item);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        @Override public void postDecode() {}
+    }
+
+    private static Item item(int id) {
+        Item item = new Item();
+        item.id = id;
+        item.name = "item" + id;
+        item.tags.add("a");
+        item.tags.add("b" + id);
+        return item;
+    }
+
+    @Test
+    public void reuseEncoder() throws Exception {
+        Bin2Encoder encoder = new Bin2Encoder();
+        Bin2Decoder decoder = new Bin2Decoder();
+        for (int i = 0; i < 10; i++) {
+            byte[] bytes = encoder.encode(item(i));
+            assertArrayEquals(CodecBin2.encodeBytes(item(i)), bytes);
+            Item decoded = (Item) decoder.decode(new Item(), bytes);
+            assertEquals(i, decoded.id);
+            assertEquals("item" + i, decoded.name);
+            assertEquals(item(i).tags, decoded.tags);
+        }
+    }
+
+    @Test
+    public void encodeToStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CodecBin2.encodeBytes(item(3), out);
+        assertArrayEquals(CodecBin2.encodeBytes(item(3)), out.toByteArray());
+    }
+
+    public static class Primitives implements Codable {
+        public int[] ints;
+        public long[] longs;
+        public short s;
+        public double d;
+        public float f;
+        public boolean b;
+    }
+
+    @Test
+    public void primitivesFromByteBuffer() throws Exception {
+        Primitives primitives = new Primitives();
+        primitives.ints = new int[]{1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        primitives.longs = new long[]{2L, -2L, Long.MIN_VALUE, Long.MAX_VALUE};
+        primitives.s = (short) -3;
+        primitives.d = 4.5;
+        primitives.f = -5.25f;
+        primitives.b = true;
+        byte[] bytes = CodecBin2.encodeBytes(primitives);
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+        buffer.put((byte) 1).put(bytes).put((byte) 2).put((byte) 3).flip();
+        buffer.get();
+        Primitives decoded = (Primitives) new Bin2Decoder().decode(new Primitives(), buffer);
+        assertEquals(2, buffer.remaining());
+        assertArrayEquals(primitives.ints, decoded.ints);
+        assertArrayEquals(primitives.longs, decoded.longs);
+        assertEquals(primitives.s, decoded.s);
+        assertEquals(primitives.d, decoded.d, 0);
+        assertEquals(primitives.f, decoded.f, 0);
+        assertEquals(primitives.b, decoded.b);
+    }
+
+    @Test
+    public void reentrantEncode() throws Exception {
+        Reentrant reentrant = new Reentrant();
+        reentrant.item = item(7);
+        byte[] bytes = CodecBin2.encodeBytes(reentrant);
+        Reentrant decoded = (Reentrant) CodecBin2.decodeBytes(new Reentrant(), bytes);
+        assertEquals(7, decoded.item.id);
+        assertArrayEquals(CodecBin2.encodeBytes(item(7)), decoded.itemBytes);
+    }
+
+    public static class Flat implements Codable {
+        public long l;
+        public int i;
+        public boolean b;
+        public double d;
+    }
+
+    @Test
+    public void allPrimitiveRoundTrip() throws Exception {
+        Flat flat = new Flat();
+        flat.l = Long.MIN_VALUE;
+        flat.i = -7;
+        flat.b = true;
+        flat.d = 0.25;
+        byte[] bytes = CodecBin2.encodeBytes(flat);
+        // header, presence and type name, then a presence byte and value per field
+        assertEquals(4 + 2 + 4 + 8 + 4 + 1 + 8, bytes.length);
+        Flat decoded = (Flat) CodecBin2.decodeBytes(new Flat(), bytes);
+        assertEquals(flat.l, decoded.l);
+        assertEquals(flat.i, decoded.i);
+        assertEquals(flat.b, decoded.b);
+        assertEquals(flat.d, decoded.d, 0);
+    }
+
+    public static class Nested implements Codable {
+        public Map<String, List<Item>> groups;
+        public List<Map<String, Integer>> counts;
+        public List<List<String>> names;
+    }
+
+    @Test
+    public void nestedContainers() throws Exception {
+        Nested nested = new Nested();
+        nested.groups = new HashMap<>();
+        nested.groups.put("a", Arrays.asList(item(1), item(2)));
+        nested.groups.put("b", null);
+        Map<String, Integer> count = new HashMap<>();
+        count.put("x", 1);
+        nested.counts = Arrays.asList(count, new HashMap<String, Integer>());
+        nested.names = Arrays.asList(Arrays.asList("p", "q"), null);
+        Nested decoded = (Nested) CodecBin2.decodeBytes(new Nested(), CodecBin2.encodeBytes(nested));
+        assertEquals(2, decoded.groups.get("a").size());
+        assertEquals("item2", decoded.groups.get("a").get(1).name);
+        assertEquals(null, decoded.groups.get("b"));
+        assertEquals(nested.counts, decoded.counts);
+        assertEquals(nested.names, decoded.names);
+    }
+
+    public static class Chars implements Codable {
+        public char c;
+        public byte b;
+        public short s;
+        public float f;
+    }
+
+    public static class Mixed implements Codable {
+        public Flat flat;
+        public List<Chars> chars = new ArrayList<>();
+        public String name;
+    }
+
+    @Test
+    public void fixedLayout() throws Exception {
+        Flat flat = new Flat();
+        flat.l = -1;
+        flat.i = 42;
+        flat.b = true;
+        flat.d = 1.5;
+        Chars chars = new Chars();
+        chars.c = 'z';
+        chars.b = (byte) -2;
+        chars.s = (short) 300;
+        chars.f = 2.5f;
+        Mixed mixed = new Mixed();
+        mixed.flat = flat;
+        mixed.chars.add(chars);
+        mixed.name = "mixed";
+
+        Bin2Encoder encoder = new Bin2Encoder(true);
+        byte[] flatBytes = encoder.encode(flat);
+        // header, presence and type name, then one block with no per-field presence bytes
+        assertEquals(4 + 2 + 8 + 4 + 1 + 8, flatBytes.length);
+        assertEquals(CodecBin2.FIXED_LAYOUT_CODEC_VERSION, flatBytes[3]);
+        Flat decodedFlat = (Flat) CodecBin2.decodeBytes(new Flat(), flatBytes);
+        assertEquals(flat.l, decodedFlat.l);
+        assertEquals(flat.i, decodedFlat.i);
+        assertEquals(flat.b, decodedFlat.b);
+        assertEquals(flat.d, decodedFlat.d, 0);
+
+        Mixed decoded = (Mixed) CodecBin2.decodeBytes(new Mixed(), encoder.encode(mixed));
+        assertEquals(42, decoded.flat.i);
+        assertEquals('z', decoded.chars.get(0).c);
+        assertEquals((byte) -2, decoded.chars.get(0).b);
+        assertEquals((short) 300, decoded.chars.get(0).s);
+        assertEquals(2.5f, decoded.chars.get(0).f, 0);
+        assertEquals("mixed", decoded.name);
+    }
+
+    public static class Counter implements SnapshotCodable, ConcurrentCodable {
+        public int count;
+        public List<String> seen = new ArrayList<>();
+        boolean locked;
+
+        @Override public synchronized Object encodeSnapshot() {
+            Counter snapshot = new Counter();
+            snapshot.count = count;
+            snapshot.seen = new ArrayList<>(seen);
+            return snapshot;
+        }
+
+        @Override public void encodeLock() {
+            locked = true;
+        }
+
+        @Override public void encodeUnlock() {}
+    }
+
+    @Test
+    public void snapshotEncode() throws Exception {
+        Counter counter = new Counter();
+        counter.count = 2;
+        counter.seen.add("x");
+        Counter decoded = (Counter) CodecBin2.decodeBytes(new Counter(), CodecBin2.encodeBytes(counter));
+        assertFalse(counter.locked);
+        assertEquals(2, decoded.count);
+        assertEquals(counter.seen, decoded.seen);
+    }
+}
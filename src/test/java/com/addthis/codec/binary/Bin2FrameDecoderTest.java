@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.ByteArrayOutputStream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.addthis.codec.binary.DecodeLimitException.Limit;
+import com.addthis.codec.codables.Codable;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Bin2FrameDecoderTest {
+
+    public static class Message implements Codable {
+        public int id;
+        public String body;
+        public List<String> parts = new ArrayList<>();
+    }
+
+    private static byte[] stream(int count) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            Message message = new Message();
+            message.id = i;
+            message.body = "message body " + i;
+            for (int j = 0; j <= i; j++) {
+                message.parts.add("part" + j);
+            }
+            CodecBin2.encodeFrame(message, out);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void arbitraryChunks() throws Exception {
+        byte[] bytes = stream(20);
+        for (int chunkSize : new int[]{1, 3, 7, 64, bytes.length}) {
+            Bin2FrameDecoder decoder = new Bin2FrameDecoder(Message.class);
+            List<Object> out = new ArrayList<>();
+            for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+                decoder.feed(bytes, offset, Math.min(chunkSize, bytes.length - offset), out);
+            }
+            assertEquals(20, out.size());
+            assertEquals(0, decoder.pendingBytes());
+            for (int i = 0; i < out.size(); i++) {
+                Message message = (Message) out.get(i);
+                assertEquals(i, message.id);
+                assertEquals("message body " + i, message.body);
+                assertEquals(i + 1, message.parts.size());
+            }
+        }
+    }
+
+    @Test
+    public void partialMessageIsHeld() throws Exception {
+        byte[] bytes = stream(2);
+        Bin2FrameDecoder decoder = new Bin2FrameDecoder(Message.class);
+        List<Object> out = new ArrayList<>();
+        decoder.feed(bytes, 0, bytes.length - 1, out);
+        assertEquals(1, out.size());
+        decoder.feed(bytes, bytes.length - 1, 1, out);
+        assertEquals(2, out.size());
+    }
+
+    @Test
+    public void byteBufLeavesPartialFrame() throws Exception {
+        byte[] bytes = stream(3);
+        Bin2FrameDecoder decoder = new Bin2FrameDecoder(Message.class);
+        List<Object> out = new ArrayList<>();
+        ByteBuf direct = Unpooled.directBuffer(bytes.length);
+        direct.writeBytes(bytes, 0, bytes.length - 1);
+        decoder.decode(direct, out);
+        assertEquals(2, out.size());
+        direct.writeByte(bytes[bytes.length - 1]);
+        decoder.decode(direct, out);
+        assertEquals(3, out.size());
+        assertEquals(0, direct.readableBytes());
+        assertEquals(2, ((Message) out.get(2)).id);
+        direct.release();
+    }
+
+    @Test
+    public void oversizedMessage() throws Exception {
+        byte[] bytes = stream(5);
+        Bin2FrameDecoder decoder = new Bin2FrameDecoder(Message.class, Bin2Limits.UNLIMITED.withMaxBytes(20));
+        List<Object> out = new ArrayList<>();
+        try {
+            // the length header alone is enough to reject the frame
+            decoder.feed(bytes, 0, BufferOut.MESSAGE_HEADER_BYTES, out);
+            fail("expected the byte limit to be exceeded");
+        } catch (DecodeLimitException ex) {
+            assertEquals(Limit.BYTES, ex.getLimit());
+        }
+    }
+}
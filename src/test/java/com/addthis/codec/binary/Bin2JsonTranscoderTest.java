@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.addthis.codec.codables.Codable;
+import com.addthis.codec.jackson.Jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class Bin2JsonTranscoderTest {
+
+    public enum Color { RED, BLUE }
+
+    public static class Inner implements Codable {
+        public String label;
+        public double weight;
+    }
+
+    public static class Outer implements Codable {
+        public int id;
+        public long[] counts;
+        public int[] empty = new int[0];
+        public String missing;
+        public Color color;
+        public List<Inner> inners = new ArrayList<>();
+        public Map<String, Integer> scores = new TreeMap<>();
+        public Inner single;
+    }
+
+    @Test
+    public void transcode() throws Exception {
+        Outer outer = new Outer();
+        outer.id = 5;
+        outer.counts = new long[]{1, 2};
+        outer.color = Color.BLUE;
+        Inner inner = new Inner();
+        inner.label = "x";
+        inner.weight = 1.5;
+        outer.inners.add(inner);
+        outer.scores.put("a", 1);
+        outer.single = inner;
+        byte[] bytes = CodecBin2.encodeBytes(outer);
+
+        String json = new Bin2JsonTranscoder().toJson(Outer.class, bytes);
+        JsonNode expected = Jackson.SIMPLE_MAPPER.readTree(
+                "{\"color\":\"BLUE\",\"counts\":[1,2],\"id\":5," +
+                "\"inners\":[{\"label\":\"x\",\"weight\":1.5}],\"scores\":{\"a\":1}," +
+                "\"single\":{\"label\":\"x\",\"weight\":1.5}}");
+        assertEquals(expected, Jackson.SIMPLE_MAPPER.readTree(json));
+
+        JsonNode fromParser = Jackson.SIMPLE_MAPPER.readTree(
+                new Bin2JsonTranscoder().asParser(Outer.class, bytes, Jackson.SIMPLE_MAPPER));
+        // long values stay longs when read from tokens, so compare the rendered text
+        assertEquals(expected.toString(), fromParser.toString());
+    }
+
+    public static class Nested implements Codable {
+        public Map<String, List<Integer>> groups = new TreeMap<>();
+    }
+
+    @Test
+    public void nestedContainers() throws Exception {
+        Nested nested = new Nested();
+        nested.groups.put("a", Arrays.asList(1, 2));
+        nested.groups.put("b", null);
+        String json = new Bin2JsonTranscoder().toJson(Nested.class, CodecBin2.encodeBytes(nested));
+        assertEquals(Jackson.SIMPLE_MAPPER.readTree("{\"groups\":{\"a\":[1,2],\"b\":null}}"),
+                     Jackson.SIMPLE_MAPPER.readTree(json));
+    }
+
+    public static class Point implements Codable {
+        public int x;
+        public float y;
+        public boolean z;
+    }
+
+    @Test
+    public void fixedLayout() throws Exception {
+        Point point = new Point();
+        point.x = 3;
+        point.y = 0.5f;
+        point.z = true;
+        String json = new Bin2JsonTranscoder().toJson(Point.class, new Bin2Encoder(true).encode(point));
+        assertEquals(Jackson.SIMPLE_MAPPER.readTree("{\"x\":3,\"y\":0.5,\"z\":true}"),
+                     Jackson.SIMPLE_MAPPER.readTree(json));
+    }
+}
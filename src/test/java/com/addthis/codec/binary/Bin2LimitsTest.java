@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.EOFException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.addthis.codec.binary.DecodeLimitException.Limit;
+import com.addthis.codec.codables.Codable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class Bin2LimitsTest {
+
+    public static class Holder implements Codable {
+        public long[] longs;
+        public List<String> strings = new ArrayList<>();
+    }
+
+    public static class Node implements Codable {
+        public Node next;
+    }
+
+    private static Holder holder() {
+        Holder holder = new Holder();
+        holder.longs = new long[]{1, 2, 3};
+        holder.strings.addAll(Arrays.asList("a", "b", "c", "d"));
+        return holder;
+    }
+
+    private static void expectLimit(Limit limit, Bin2Limits limits, Object shell, byte[] bytes) throws Exception {
+        try {
+            new Bin2Decoder(limits).decode(shell, bytes);
+            fail("expected " + limit + " limit to be exceeded");
+        } catch (DecodeLimitException ex) {
+            assertEquals(limit, ex.getLimit());
+        }
+    }
+
+    @Test
+    public void withinLimits() throws Exception {
+        byte[] bytes = CodecBin2.encodeBytes(holder());
+        Bin2Limits limits = Bin2Limits.UNLIMITED.withMaxBytes(bytes.length).withMaxCollectionLength(4);
+        Holder decoded = (Holder) new Bin2Decoder(limits).decode(new Holder(), bytes);
+        assertEquals(4, decoded.strings.size());
+    }
+
+    @Test
+    public void collectionLength() throws Exception {
+        byte[] bytes = CodecBin2.encodeBytes(holder());
+        expectLimit(Limit.COLLECTION_LENGTH, Bin2Limits.UNLIMITED.withMaxCollectionLength(3), new Holder(), bytes);
+    }
+
+    @Test
+    public void totalBytes() throws Exception {
+        byte[] bytes = CodecBin2.encodeBytes(holder());
+        expectLimit(Limit.BYTES, Bin2Limits.UNLIMITED.withMaxBytes(bytes.length - 1), new Holder(), bytes);
+    }
+
+    @Test
+    public void depth() throws Exception {
+        Node root = new Node();
+        root.next = new Node();
+        root.next.next = new Node();
+        byte[] bytes = CodecBin2.encodeBytes(root);
+        new Bin2Decoder(Bin2Limits.UNLIMITED.withMaxDepth(3)).decode(new Node(), bytes);
+        expectLimit(Limit.DEPTH, Bin2Limits.UNLIMITED.withMaxDepth(2), new Node(), bytes);
+    }
+
+    @Test
+    public void corruptLengthRejectedBeforeAllocation() throws Exception {
+        Holder holder = new Holder();
+        holder.longs = new long[]{1};
+        holder.strings = null;
+        byte[] bytes = CodecBin2.encodeBytes(holder);
+        // version(4), object marker, empty type name, longs presence byte, then the length prefix
+        int lengthOffset = 7;
+        assertEquals(1, bytes[lengthOffset]);
+        byte[] corrupt = Arrays.copyOf(bytes, bytes.length + 4);
+        System.arraycopy(bytes, lengthOffset + 1, corrupt, lengthOffset + 5, bytes.length - lengthOffset - 1);
+        // a five byte varint claiming roughly two billion elements
+        corrupt[lengthOffset] = (byte) 0xff;
+        corrupt[lengthOffset + 1] = (byte) 0xff;
+        corrupt[lengthOffset + 2] = (byte) 0xff;
+        corrupt[lengthOffset + 3] = (byte) 0xff;
+        corrupt[lengthOffset + 4] = (byte) 0x07;
+        try {
+            CodecBin2.decodeBytes(new Holder(), corrupt);
+            fail("expected truncated input to be rejected");
+        } catch (EOFException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.binary;
+
+import java.io.EOFException;
+
+import com.addthis.basis.util.LessBytes;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BufferOutTest {
+
+    @Test
+    public void nestedMessages() throws Exception {
+        BufferOut out = new BufferOut();
+        out.write(7);
+        int outer = out.beginMessage();
+        LessBytes.writeString("first", out);
+        int inner = out.beginMessage();
+        LessBytes.writeInt(42, out);
+        out.endMessage(inner);
+        LessBytes.writeString("after", out);
+        out.endMessage(outer);
+        int skipped = out.beginMessage();
+        LessBytes.writeLong(1L, out);
+        out.endMessage(skipped);
+        out.write(9);
+
+        BufferIn in = new BufferIn(out.toByteArray());
+        assertEquals(7, in.read());
+        int outerLimit = in.beginMessage();
+        assertEquals("first", LessBytes.readString(in));
+        in.skipMessage();
+        assertEquals("after", LessBytes.readString(in));
+        assertEquals(-1, in.read());
+        in.endMessage(outerLimit);
+        in.skipMessage();
+        assertEquals(9, in.read());
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void endMessageSkipsUnreadBody() throws Exception {
+        BufferOut out = new BufferOut();
+        int mark = out.beginMessage();
+        LessBytes.writeString("unread", out);
+        out.endMessage(mark);
+        out.write(3);
+
+        BufferIn in = new BufferIn(out.toByteArray());
+        in.endMessage(in.beginMessage());
+        assertEquals(3, in.read());
+    }
+
+    @Test
+    public void truncatedMessage() throws Exception {
+        BufferOut out = new BufferOut();
+        int mark = out.beginMessage();
+        LessBytes.writeLong(5L, out);
+        out.endMessage(mark);
+        byte[] bytes = out.toByteArray();
+        byte[] truncated = new byte[bytes.length - 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try {
+            new BufferIn(truncated).beginMessage();
+            fail("expected EOFException");
+        } catch (EOFException expected) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.codables;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.addthis.codec.binary.CodecBin2;
+import com.addthis.codec.jackson.Jackson;
+
+import com.typesafe.config.ConfigFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PostDecodeCollectorTest {
+
+    public static class Node implements SuperCodable {
+        public String name;
+        public List<Node> children = new ArrayList<>();
+        public int total;
+        public boolean decoded;
+
+        @Override public void postDecode() {
+            total = 1;
+            for (Node child : children) {
+                assertTrue("child " + child.name + " before parent " + name, child.decoded);
+                total += child.total;
+            }
+            decoded = true;
+        }
+
+        @Override public void preEncode() {}
+    }
+
+    private static Node tree() {
+        Node root = new Node();
+        root.name = "root";
+        for (int i = 0; i < 3; i++) {
+            Node child = new Node();
+            child.name = "child" + i;
+            Node leaf = new Node();
+            leaf.name = "leaf" + i;
+            child.children.add(leaf);
+            root.children.add(child);
+        }
+        return root;
+    }
+
+    @Test
+    public void sequentialBin2() throws Exception {
+        PostDecodeCollector collector = PostDecodeCollector.sequential();
+        Node decoded = (Node) CodecBin2.decodeBytes(new Node(), CodecBin2.encodeBytes(tree()), collector);
+        assertEquals(7, decoded.total);
+        assertEquals(0, collector.size());
+    }
+
+    @Test
+    public void parallelBin2() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            PostDecodeCollector collector = PostDecodeCollector.parallel(executor);
+            Node decoded = (Node) CodecBin2.decodeBytes(new Node(), CodecBin2.encodeBytes(tree()), collector);
+            assertEquals(7, decoded.total);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void jackson() throws Exception {
+        PostDecodeCollector collector = PostDecodeCollector.sequential();
+        Node decoded = Jackson.defaultCodec().decodeObject(
+                Node.class, ConfigFactory.parseString("name = root, children = [{name = a, children = [{}]}]").root(),
+                collector);
+        assertEquals(3, decoded.total);
+    }
+
+    @Test
+    public void failedBin2DecodeDiscardsCollected() throws Exception {
+        PostDecodeCollector collector = PostDecodeCollector.sequential();
+        byte[] bytes = CodecBin2.encodeBytes(tree());
+        Node shell = new Node();
+        try {
+            CodecBin2.decodeBytes(shell, Arrays.copyOf(bytes, bytes.length - 1), collector);
+            fail("truncated message should not decode");
+        } catch (Exception expected) {
+            // the leaves and children read before the end of the data were collected, then dropped
+        }
+        assertEquals(0, collector.size());
+        for (Node child : shell.children) {
+            assertFalse(child.name, child.decoded);
+        }
+        // and the collector is still usable
+        Node decoded = (Node) CodecBin2.decodeBytes(new Node(), bytes, collector);
+        assertEquals(7, decoded.total);
+    }
+
+    @Test
+    public void failedJacksonDecodeDiscardsCollected() throws Exception {
+        PostDecodeCollector collector = PostDecodeCollector.sequential();
+        try {
+            Jackson.defaultCodec().decodeObject(
+                    Node.class, ConfigFactory.parseString("children = [{name = a}], total = [not, a, number]").root(),
+                    collector);
+            fail("total is not a number");
+        } catch (Exception expected) {
+            // the child was collected before total failed, then dropped
+        }
+        assertEquals(0, collector.size());
+    }
+
+    @Test
+    public void clear() {
+        PostDecodeCollector collector = PostDecodeCollector.sequential();
+        Node node = new Node();
+        collector.enter();
+        collector.add(node);
+        collector.clear();
+        assertEquals(0, collector.size());
+        collector.run();
+        assertFalse(node.decoded);
+    }
+}
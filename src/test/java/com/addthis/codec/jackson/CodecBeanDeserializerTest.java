@@ -0,0 +1,58 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.TreeNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CodecBeanDeserializerTest {
+
+    /** Fails any attempt to read a tree, as the non-streaming path did for every bean. */
+    private static class TreelessMapper extends ObjectMapper {
+        TreelessMapper(ObjectMapper src) {
+            super(src);
+        }
+
+        @Override public <T extends TreeNode> T readTree(JsonParser p) {
+            throw new AssertionError("no tree should be built for beans without field actions");
+        }
+    }
+
+    @Test
+    public void noTreeWithoutFieldActions() throws Exception {
+        ObjectMapper mapper = new TreelessMapper(Jackson.defaultMapper());
+        Plain plain = mapper.readValue("{\"count\": null, \"name\": \"given\", \"child\": {\"count\": 3}, " +
+                                       "\"empty\": {}}", Plain.class);
+        // the explicit null is still dropped so the initial value survives
+        assertEquals(7, plain.count);
+        assertEquals("given", plain.name);
+        assertEquals(3, plain.child.count);
+        assertEquals("keep", plain.child.name);
+        assertNull(plain.child.child);
+        assertEquals(7, plain.empty.count);
+    }
+
+    static class Plain {
+        public int count = 7;
+        public String name = "keep";
+        public Plain child;
+        public Plain empty;
+    }
+}
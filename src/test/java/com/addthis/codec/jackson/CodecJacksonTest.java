@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.addthis.codec.plugins.PluginMap;
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CodecJacksonTest {
+
+    private static CodecJackson newCodec(boolean weakClassKeys) {
+        PluginRegistry registry = PluginRegistry.defaultRegistry();
+        return new CodecJackson(Jackson.newObjectMapper(registry), registry, registry.config(),
+                                Jackson.defaultValidator(), weakClassKeys);
+    }
+
+    public static class Simple {
+        public int count;
+    }
+
+    @Test
+    public void sharedReadersAndWriters() {
+        CodecJackson codec = newCodec(false);
+        ObjectReader reader = codec.readerFor(Simple.class);
+        assertSame(reader, codec.readerFor(Simple.class));
+        assertSame(reader, codec.readerFor(codec.getObjectMapper().constructType(Simple.class)));
+        ObjectWriter writer = codec.writerFor(Simple.class);
+        assertSame(writer, codec.writerFor(Simple.class));
+    }
+
+    @Test
+    public void rebuiltAfterMapperChanges() {
+        CodecJackson codec = newCodec(false);
+        ObjectReader reader = codec.readerFor(Simple.class);
+        ObjectWriter writer = codec.writerFor(Simple.class);
+
+        codec.getObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        ObjectReader rebuiltReader = codec.readerFor(Simple.class);
+        assertNotSame(reader, rebuiltReader);
+        assertFalse(rebuiltReader.isEnabled(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        assertSame(rebuiltReader, codec.readerFor(Simple.class));
+
+        codec.getObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectWriter rebuiltWriter = codec.writerFor(Simple.class);
+        assertNotSame(writer, rebuiltWriter);
+        assertTrue(rebuiltWriter.isEnabled(SerializationFeature.INDENT_OUTPUT));
+        assertSame(rebuiltWriter, codec.writerFor(Simple.class));
+    }
+
+    @Test
+    public void noSharingWithWeakClassKeys() {
+        CodecJackson codec = newCodec(true);
+        assertNotSame(codec.readerFor(Simple.class), codec.readerFor(Simple.class));
+        assertNotSame(codec.writerFor(Simple.class), codec.writerFor(Simple.class));
+    }
+
+    @Test
+    public void warmUpCoversRegistry() {
+        CodecJackson codec = newCodec(false);
+        Set<Class<?>> expected = new LinkedHashSet<>();
+        Set<Class<?>> sugar = new LinkedHashSet<>();
+        for (PluginMap pluginMap : codec.getPluginRegistry().asMap().values()) {
+            if (pluginMap.baseClass() != null) {
+                expected.add(pluginMap.baseClass());
+            }
+            expected.addAll(pluginMap.asBiMap().values());
+            if (pluginMap.arraySugar() != null) {
+                sugar.add(pluginMap.arraySugar());
+            }
+            if (pluginMap.defaultSugar() != null) {
+                sugar.add(pluginMap.defaultSugar());
+            }
+        }
+        Map<Class<?>, Long> nanos = codec.warmUp();
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(nanos.keySet()));
+        assertTrue(nanos.keySet().containsAll(sugar));
+        for (Long time : nanos.values()) {
+            assertTrue(time >= 0);
+        }
+    }
+
+    @Test
+    public void parallelWarmUpKeepsRegistryOrder() {
+        CodecJackson codec = newCodec(false);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Map<Class<?>, Long> parallel = codec.warmUp(executor);
+            assertEquals(new ArrayList<>(codec.warmUp().keySet()), new ArrayList<>(parallel.keySet()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.util.Collections;
+
+import com.addthis.codec.plugins.PluginMap;
+import com.addthis.codec.plugins.PluginRegistry;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class CodecTypeIdResolverTest {
+
+    static CodecTypeIdResolver resolver(String category) {
+        PluginRegistry registry = PluginRegistry.defaultRegistry();
+        PluginMap pluginMap = registry.asMap().get(category);
+        TypeFactory typeFactory = Jackson.defaultMapper().getTypeFactory();
+        return new CodecTypeIdResolver(pluginMap, typeFactory.constructType(pluginMap.baseClass()), typeFactory,
+                                       Collections.emptyList(), registry);
+    }
+
+    @Test
+    public void aliasDefaults() {
+        CodecTypeIdResolver greet = resolver("greet");
+        ObjectNode defaults = greet.aliasDefaults("multi-simple-primary");
+        assertEquals("Hello World", defaults.get("prefix").textValue());
+        assertSame(defaults, greet.aliasDefaults("multi-simple-primary"));
+        assertEquals("alias defaults", greet.aliasDefaults("configDefaulted").get("source").textValue());
+        assertEquals(0, greet.aliasDefaults("simple").size());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.addthis.codec.annotations.FieldConfig;
+import com.addthis.codec.annotations.Time;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import com.typesafe.config.ConfigValueFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FieldDefaultsParserTest {
+
+    @Rule
+    public ExpectedException thrown = ExpectedException.none();
+
+    private static ObjectMapper streamingMapper() {
+        return streamingMapper(ConfigFactory.empty());
+    }
+
+    private static ObjectMapper streamingMapper(Config overrides) {
+        return Jackson.defaultCodec()
+                      .withOverrides(ConfigValueFactory.fromAnyRef(true)
+                                                       .atPath("addthis.codec.jackson.streaming-fields")
+                                                       .withFallback(overrides))
+                      .getObjectMapper();
+    }
+
+    @Test
+    public void nestedFields() throws Exception {
+        String json = "{\"count\": null, \"delay\": \"2 seconds\", \"name\": null, " +
+                      "\"child\": {\"delay\": 5, \"children\": [{\"count\": 3}, {}]}, \"children\": null}";
+        Holder holder = streamingMapper().readValue(json, Holder.class);
+        assertEquals(7, holder.count);
+        assertEquals(2000, holder.delay);
+        assertEquals("keep", holder.name);
+        assertEquals(5, holder.child.delay);
+        assertEquals(3, holder.child.children.get(0).count);
+        assertEquals(7, holder.child.children.get(1).count);
+        assertNull(holder.children);
+    }
+
+    @Test
+    public void textualDefaultWithUnits() throws Exception {
+        ObjectMapper mapper = streamingMapper(ConfigValueFactory.fromAnyRef("3 seconds")
+                                                                .atPath(Timed.class.getCanonicalName() + ".timeout"));
+        assertEquals(3000, mapper.readValue("{}", Timed.class).timeout);
+        assertEquals(3000, mapper.readValue("{\"timeout\": null}", Timed.class).timeout);
+        assertEquals(5, mapper.readValue("{\"timeout\": 5}", Timed.class).timeout);
+    }
+
+    @Test
+    public void missingRequired() throws Exception {
+        thrown.expect(MissingPropertyException.class);
+        streamingMapper().readValue("{\"holder\": {}}", Required.class);
+    }
+
+    static class Holder {
+        public int count = 7;
+        @Time(TimeUnit.MILLISECONDS) public long delay;
+        public String name = "keep";
+        public Holder child;
+        public List<Holder> children;
+    }
+
+    static class Timed {
+        @Time(TimeUnit.MILLISECONDS) public long timeout;
+    }
+
+    static class Required {
+        @FieldConfig(required = true) public String name;
+        public Holder holder;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class JacksonTest {
+
+    private static ObjectNode node(String json) throws IOException {
+        return (ObjectNode) Jackson.SIMPLE_MAPPER.readTree(json);
+    }
+
+    @Test
+    public void mergeSharedTwice() throws IOException {
+        ObjectNode first = node("{\"a\": {\"x\": 1}, \"b\": 2}");
+        ObjectNode second = node("{\"a\": {\"y\": 3}, \"b\": 4}");
+        ObjectNode primary = node("{}");
+        Jackson.mergeShared(primary, first);
+        // "a" in primary is now first's node; merging into it must not change first
+        Jackson.mergeShared(primary, second);
+        assertEquals(node("{\"a\": {\"x\": 1, \"y\": 3}, \"b\": 2}"), primary);
+        assertEquals(node("{\"a\": {\"x\": 1}, \"b\": 2}"), first);
+        assertEquals(node("{\"a\": {\"y\": 3}, \"b\": 4}"), second);
+
+        // and the same backup merged into itself
+        ObjectNode again = node("{}");
+        Jackson.mergeShared(again, first);
+        Jackson.mergeShared(again, first);
+        assertEquals(node("{\"a\": {\"x\": 1}, \"b\": 2}"), first);
+    }
+
+    @Test
+    public void mergeSharedLeavesAliasDefaultsUnchanged() throws IOException {
+        CodecTypeIdResolver greet = CodecTypeIdResolverTest.resolver("greet");
+        ObjectNode defaults = greet.aliasDefaults("configDefaulted");
+        ObjectNode expected = defaults.deepCopy();
+        for (int i = 0; i < 2; i++) {
+            ObjectNode decoded = node("{\"source\": \"explicit\", \"nested\": {\"a\": 1}}");
+            Jackson.mergeShared(decoded, defaults);
+            Jackson.mergeShared(decoded, node("{\"nested\": {\"b\": 2}}"));
+            assertEquals("explicit", decoded.get("source").textValue());
+            assertEquals(expected.get("rawConfigValue"), decoded.get("rawConfigValue"));
+        }
+        assertEquals(expected, greet.aliasDefaults("configDefaulted"));
+    }
+}
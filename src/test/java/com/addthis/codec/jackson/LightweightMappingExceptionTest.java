@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.databind.JsonMappingException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LightweightMappingExceptionTest {
+
+    private static JsonMappingException failure() {
+        JsonMappingException cause = new JsonMappingException("bad value");
+        cause.prependPath(Object.class, "inner");
+        cause.prependPath(Object.class, "outer");
+        return cause;
+    }
+
+    @Test
+    public void improveLocation() {
+        JsonLocation location = new JsonLocation("source", -1, 3, 5);
+        JsonMappingException regular = Jackson.maybeImproveLocation(location, failure(), false);
+        JsonMappingException lightweight = Jackson.maybeImproveLocation(location, failure(), true);
+        assertTrue(lightweight instanceof LightweightMappingException);
+        assertEquals(0, lightweight.getStackTrace().length);
+        assertEquals(regular.getMessage(), lightweight.getMessage());
+        assertEquals(regular.getPath().toString(), lightweight.getPath().toString());
+        // already located, so left alone
+        assertSame(lightweight, Jackson.maybeImproveLocation(location, lightweight, true));
+    }
+
+    @Test
+    public void unwrapPath() {
+        JsonLocation location = new JsonLocation("source", -1, 3, 5);
+        JsonMappingException lightweight = Jackson.maybeImproveLocation(location, failure(), true);
+        IOException unwrapped = Jackson.maybeUnwrapPath("outer", lightweight, true);
+        assertTrue(unwrapped instanceof LightweightMappingException);
+        assertEquals(1, ((JsonMappingException) unwrapped).getPath().size());
+        assertEquals("inner", ((JsonMappingException) unwrapped).getPath().get(0).getFieldName());
+        assertEquals(location, ((JsonMappingException) unwrapped).getLocation());
+    }
+}
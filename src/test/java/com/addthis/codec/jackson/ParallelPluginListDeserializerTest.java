@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.jackson;
+
+import java.io.IOException;
+
+import java.util.List;
+
+import com.addthis.codec.json.CodecJSONTest.AbstractLetter;
+import com.addthis.codec.json.CodecJSONTest.C;
+import com.addthis.codec.json.CodecJSONTest.D;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
+import com.typesafe.config.ConfigValueFactory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelPluginListDeserializerTest {
+
+    private static ObjectMapper parallelMapper() {
+        return Jackson.defaultCodec()
+                      .withOverrides(ConfigValueFactory.fromAnyRef(2)
+                                                       .atPath("addthis.codec.jackson.parallel-plugin-lists"))
+                      .getObjectMapper();
+    }
+
+    @Test
+    public void keepsOrder() throws Exception {
+        Letters letters = parallelMapper().readValue(
+                "{list: [{type: \"C\", intField: 1}, {type: \"C\", intField: 2}, {type: \"C\", intField: 3}], " +
+                "array: [{type: \"C\", intField: 4}, {type: \"C\", intField: 5}]}", Letters.class);
+        assertEquals(3, letters.list.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 1, ((C) letters.list.get(i)).intField);
+        }
+        assertEquals(5, ((C) letters.array[1]).intField);
+    }
+
+    @Test
+    public void nestedAndSmallLists() throws Exception {
+        D d = parallelMapper().readValue("{type: \"D\", letters: [{type: \"C\", intField: 1}]}", D.class);
+        assertEquals(1, ((C) d.letters[0]).intField);
+    }
+
+    @Test
+    public void errorPath() throws Exception {
+        try {
+            parallelMapper().readValue(
+                    "{list: [{type: \"C\"}, {type: \"C\", intField: \"x\"}, {type: \"C\", intField: \"y\"}]}",
+                    Letters.class);
+            fail("should have thrown");
+        } catch (JsonMappingException ex) {
+            assertEquals("list", ex.getPath().get(0).getFieldName());
+            assertEquals(1, ex.getPath().get(1).getIndex());
+        }
+    }
+
+    @Test
+    public void customContentDeserializer() throws Exception {
+        CustomLetters letters = parallelMapper().readValue(
+                "{list: [{type: \"C\", intField: 1}, {type: \"C\", intField: 2}, {type: \"C\", intField: 3}]}",
+                CustomLetters.class);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(-1, ((C) letters.list.get(i)).intField);
+        }
+    }
+
+    @Test
+    public void readerFeaturesReachElements() throws Exception {
+        String json = "{list: [{type: \"C\", intField: 1}, {type: \"C\", intField: 2.5}]}";
+        assertEquals(2, ((C) parallelMapper().readValue(json, Letters.class).list.get(1)).intField);
+        try {
+            parallelMapper().readerFor(Letters.class)
+                            .without(DeserializationFeature.ACCEPT_FLOAT_AS_INT)
+                            .readValue(json);
+            fail("should have thrown");
+        } catch (JsonMappingException ex) {
+            assertEquals(1, ex.getPath().get(1).getIndex());
+        }
+    }
+
+    public static class Letters {
+        public List<AbstractLetter> list;
+        public AbstractLetter[] array;
+    }
+
+    public static class CustomLetters {
+        @JsonDeserialize(contentUsing = FixedLetterDeserializer.class)
+        public List<AbstractLetter> list;
+    }
+
+    public static class FixedLetterDeserializer extends JsonDeserializer<AbstractLetter> {
+        @Override public AbstractLetter deserialize(JsonParser jp, DeserializationContext ctxt) throws IOException {
+            jp.skipChildren();
+            C letter = new C();
+            letter.intField = -1;
+            return letter;
+        }
+
+        // plugin elements have type info, which would otherwise pick the deserializer of the concrete type
+        @Override public Object deserializeWithType(JsonParser jp, DeserializationContext ctxt,
+                                                    TypeDeserializer typeDeserializer) throws IOException {
+            return deserialize(jp, ctxt);
+        }
+    }
+}
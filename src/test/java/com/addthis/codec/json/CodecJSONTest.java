@@ -94,4 +94,13 @@ public class CodecJSONTest {
         assertEquals(6, ((C) asD.letters[1]).intField);
     }
 
+    @Test
+    public void typePropertyAfterFields() throws Exception {
+        Holder object = CodecJSON.decodeString(Holder.class,
+                                               "{thing: {letters: [{intField: 5, type: \"C\"}, {type: \"C\"}], type: \"D\"}}");
+        D asD = (D) object.thing;
+        assertEquals(5, ((C) asD.letters[0]).intField);
+        assertEquals(0, ((C) asD.letters[1]).intField);
+    }
+
 }
@@ -40,6 +40,13 @@ public class PluginRegistryTest {
         Assert.assertEquals(2, mapping.get("greet").asBiMap().size());
     }
 
+    @Test
+    public void primaryFields() {
+        PluginMap greet = PluginRegistry.defaultRegistry().asMap().get("greet");
+        Assert.assertEquals("suffix", greet.primaryField("multi-simple-primary"));
+        Assert.assertNull(greet.primaryField("simple"));
+    }
+
     @Test
     public void loadError() {
         thrown.expectCause(isA(ClassNotFoundException.class));
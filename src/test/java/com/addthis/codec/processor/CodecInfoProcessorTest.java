@@ -0,0 +1,139 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.processor;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import java.io.File;
+
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.addthis.codec.binary.CodecBin2;
+import com.addthis.codec.reflection.CodableClassInfo;
+import com.addthis.codec.reflection.CodableFieldInfo;
+import com.addthis.codec.reflection.Fields;
+import com.addthis.codec.reflection.GeneratedClassInfo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+public class CodecInfoProcessorTest {
+
+    private static final String SAMPLE =
+            "package sample;\n" +
+            "public class Sample implements com.addthis.codec.codables.Codable {\n" +
+            "    public int count;\n" +
+            "    public String name;\n" +
+            "    @com.addthis.codec.annotations.FieldConfig private String secret;\n" +
+            "    public final String constant = \"fixed\";\n" +
+            "    public static class Child extends Sample {\n" +
+            "        public long extra;\n" +
+            "    }\n" +
+            "}\n";
+
+    private static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    @Test
+    public void generatesCompleteClassInfo() throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        Path output = Files.createTempDirectory("codec-info");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-d", output.toString(),
+                                             "-classpath", System.getProperty("java.class.path"),
+                                             "-processor", CodecInfoProcessor.class.getName());
+        JavaCompiler.CompilationTask task = compiler.getTask(
+                null, null, diagnostics, options, null,
+                Collections.singletonList(new Source("sample.Sample", SAMPLE)));
+        assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+        assertTrue(new File(output.toFile(), "sample/Sample$$CodecInfo.class").isFile());
+        assertTrue(new File(output.toFile(), "sample/Sample$Child$$CodecInfo.class").isFile());
+        assertEquals(Arrays.asList("sample.Sample", "sample.Sample$Child"),
+                     Files.readAllLines(output.resolve(GeneratedClassInfo.INDEX_RESOURCE), StandardCharsets.UTF_8));
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{output.toUri().toURL()},
+                                                        getClass().getClassLoader())) {
+            Class<?> sample = loader.loadClass("sample.Sample");
+            GeneratedClassInfo info =
+                    (GeneratedClassInfo) loader.loadClass("sample.Sample$$CodecInfo").newInstance();
+            assertEquals(sample, info.type());
+            assertArrayEquals(new String[]{"count", "name", "secret"}, info.fieldNames());
+            assertArrayEquals(new Class<?>[]{sample, sample, sample}, info.fieldOwners());
+            assertArrayEquals(new String[]{"int", "java.lang.String", "java.lang.String"}, info.fieldTypes());
+            assertArrayEquals(new int[]{0, 0, CodableFieldInfo.CODABLE}, info.fieldFlags());
+            assertTrue(info.hasAccessor(0));
+            assertTrue(info.hasAccessor(1));
+            assertFalse(info.hasAccessor(2));
+
+            Object object = sample.newInstance();
+            info.set(object, 0, 7);
+            info.set(object, 1, "seven");
+            assertEquals(7, info.get(object, 0));
+            assertEquals("seven", info.get(object, 1));
+
+            Class<?> child = loader.loadClass("sample.Sample$Child");
+            GeneratedClassInfo childInfo =
+                    (GeneratedClassInfo) loader.loadClass("sample.Sample$Child$$CodecInfo").newInstance();
+            assertArrayEquals(new String[]{"count", "extra", "name", "secret"}, childInfo.fieldNames());
+            assertArrayEquals(new Class<?>[]{sample, child, sample, sample}, childInfo.fieldOwners());
+            String[] owners = {"sample.Sample", "sample.Sample$Child", "sample.Sample", "sample.Sample"};
+            assertEquals(GeneratedClassInfo.signatureHash(childInfo.fieldNames(), owners, childInfo.fieldTypes(),
+                                                          childInfo.fieldFlags()),
+                         childInfo.signatureHash());
+
+            // the generated metadata is indexed and matches the fields, so it is used and round trips
+            CodableClassInfo classInfo = Fields.getClassFieldMap(child);
+            assertEquals(4, classInfo.size());
+            assertEquals(long.class, classInfo.field(1).getTypeOrComponentType());
+            Object original = child.newInstance();
+            childInfo.set(original, 0, 3);
+            childInfo.set(original, 1, 4L);
+            Object decoded = CodecBin2.decodeBytes(child.newInstance(), CodecBin2.encodeBytes(original));
+            assertNotNull(decoded);
+            assertEquals(3, childInfo.get(decoded, 0));
+            assertEquals(4L, childInfo.get(decoded, 1));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.reflection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldsTest {
+
+    public static class Sample {
+        public int a;
+        public String b;
+    }
+
+    @Test
+    public void concurrentLookupsShareOneInfo() throws Exception {
+        Fields.flushClassFieldMaps();
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<CodableClassInfo>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Callable<CodableClassInfo>() {
+                    @Override public CodableClassInfo call() throws Exception {
+                        start.await();
+                        return Fields.getClassFieldMap(Sample.class);
+                    }
+                }));
+            }
+            start.countDown();
+            CodableClassInfo first = futures.get(0).get();
+            for (Future<CodableClassInfo> future : futures) {
+                assertSame(first, future.get());
+            }
+            assertEquals(2, first.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void flushBumpsGeneration() {
+        CodableClassInfo before = Fields.getClassFieldMap(Sample.class);
+        int generation = Fields.generation();
+        Fields.flushClassFieldMaps();
+        assertEquals(generation + 1, Fields.generation());
+        assertNotSame(before, Fields.getClassFieldMap(Sample.class));
+    }
+
+    public static class Flat {
+        public long c;
+        public int a;
+        public boolean b;
+    }
+
+    public static class Holder {
+        public int a;
+        public List<String> list;
+    }
+
+    @Test
+    public void fieldTableSummary() {
+        CodableClassInfo flat = Fields.getClassFieldMap(Flat.class);
+        int i = 0;
+        for (CodableFieldInfo field : flat.values()) {
+            assertSame(field, flat.field(i++));
+        }
+        assertTrue(flat.isAllPrimitive());
+        assertEquals(13, flat.primitiveByteWidth());
+        assertFalse(flat.hasContainers());
+
+        CodableClassInfo sample = Fields.getClassFieldMap(Sample.class);
+        assertFalse(sample.isAllPrimitive());
+        assertEquals(-1, sample.primitiveByteWidth());
+        assertFalse(sample.hasContainers());
+
+        CodableClassInfo holder = Fields.getClassFieldMap(Holder.class);
+        assertFalse(holder.isAllPrimitive());
+        assertTrue(holder.hasContainers());
+
+        assertFalse(Fields.getClassFieldMap(Integer.class).isAllPrimitive());
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.reflection;
+
+import com.addthis.codec.annotations.FieldConfig;
+import com.addthis.codec.binary.CodecBin2;
+import com.addthis.codec.codables.Codable;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeneratedClassInfoTest {
+
+    @Test
+    public void prefersGeneratedInfo() throws Exception {
+        Fields.flushClassFieldMaps();
+        GeneratedSample$$CodecInfo.accessed = 0;
+        CodableClassInfo classInfo = Fields.getClassFieldMap(GeneratedSample.class);
+        assertEquals(3, classInfo.size());
+        assertEquals("count", classInfo.field(0).getName());
+        assertEquals("note", classInfo.field(1).getName());
+        assertEquals("secret", classInfo.field(2).getName());
+
+        GeneratedSample sample = new GeneratedSample();
+        sample.count = 3;
+        sample.setSecret("shh");
+        GeneratedSample decoded =
+                (GeneratedSample) CodecBin2.decodeBytes(new GeneratedSample(), CodecBin2.encodeBytes(sample));
+        assertEquals(3, decoded.count);
+        assertEquals("shh", decoded.getSecret());
+        // one read while encoding and one write while decoding; the other fields go through reflection
+        assertEquals(2, GeneratedSample$$CodecInfo.accessed);
+    }
+
+    @Test
+    public void generatedInfoIsTheSourceOfTruth() {
+        Fields.flushClassFieldMaps();
+        CodableClassInfo classInfo = Fields.getClassFieldMap(TrustedSample.class);
+        // the class is not scanned, so the unlisted field is not found and the recorded flags are used as is
+        assertEquals(1, classInfo.size());
+        assertEquals("count", classInfo.field(0).getName());
+        assertTrue(classInfo.field(0).isRequired());
+        assertFalse(classInfo.field(0).isReadOnly());
+    }
+
+    @Test
+    public void staleInfoFallsBackToReflection() throws Exception {
+        Fields.flushClassFieldMaps();
+        StaleSample$$CodecInfo.accessed = 0;
+        CodableClassInfo classInfo = Fields.getClassFieldMap(StaleSample.class);
+        assertEquals(2, classInfo.size());
+        assertEquals("added", classInfo.field(0).getName());
+        assertEquals("count", classInfo.field(1).getName());
+
+        StaleSample sample = new StaleSample();
+        sample.count = 3L;
+        sample.added = "new";
+        StaleSample decoded = (StaleSample) CodecBin2.decodeBytes(new StaleSample(), CodecBin2.encodeBytes(sample));
+        assertEquals(3L, decoded.count);
+        assertEquals("new", decoded.added);
+        assertEquals(0, StaleSample$$CodecInfo.accessed);
+    }
+
+    @Test
+    public void missingInfo() {
+        assertNull(Fields.generatedClassInfo(FieldsTest.Sample.class));
+        assertTrue(Fields.generatedClassInfo(GeneratedSample.class) instanceof GeneratedSample$$CodecInfo);
+    }
+
+    @Test
+    public void unindexedInfoIsNotLookedUp() {
+        assertNull(Fields.generatedClassInfo(UnindexedSample.class));
+    }
+}
+
+class GeneratedSample implements Codable {
+    public int count;
+    @FieldConfig private String secret;
+    public String note;
+
+    String getSecret() {
+        return secret;
+    }
+
+    void setSecret(String secret) {
+        this.secret = secret;
+    }
+}
+
+/** A hand written version of what the processor would generate for {@link GeneratedSample}. */
+class GeneratedSample$$CodecInfo implements GeneratedClassInfo {
+
+    static int accessed;
+
+    @Override public Class<?> type() {
+        return GeneratedSample.class;
+    }
+
+    @Override public String[] fieldNames() {
+        return new String[]{"count", "note", "secret"};
+    }
+
+    @Override public Class<?>[] fieldOwners() {
+        return new Class<?>[]{GeneratedSample.class, GeneratedSample.class, GeneratedSample.class};
+    }
+
+    @Override public String[] fieldTypes() {
+        return new String[]{"int", "java.lang.String", "java.lang.String"};
+    }
+
+    @Override public int[] fieldFlags() {
+        return new int[]{0, 0, CodableFieldInfo.CODABLE};
+    }
+
+    @Override public int signatureHash() {
+        String owner = GeneratedSample.class.getName();
+        return GeneratedClassInfo.signatureHash(fieldNames(), new String[]{owner, owner, owner},
+                                                fieldTypes(), fieldFlags());
+    }
+
+    @Override public boolean hasAccessor(int index) {
+        return index == 0;
+    }
+
+    @Override public Object get(Object object, int index) {
+        accessed++;
+        return ((GeneratedSample) object).count;
+    }
+
+    @Override public void set(Object object, int index, Object value) {
+        accessed++;
+        ((GeneratedSample) object).count = (Integer) value;
+    }
+}
+
+class StaleSample implements Codable {
+    public long count;
+    public String added;
+}
+
+/** Metadata generated while {@link StaleSample#count} was an int. */
+class StaleSample$$CodecInfo implements GeneratedClassInfo {
+
+    static int accessed;
+
+    @Override public Class<?> type() {
+        return StaleSample.class;
+    }
+
+    @Override public String[] fieldNames() {
+        return new String[]{"count"};
+    }
+
+    @Override public Class<?>[] fieldOwners() {
+        return new Class<?>[]{StaleSample.class};
+    }
+
+    @Override public String[] fieldTypes() {
+        return new String[]{"int"};
+    }
+
+    @Override public int[] fieldFlags() {
+        return new int[]{0};
+    }
+
+    @Override public int signatureHash() {
+        return GeneratedClassInfo.signatureHash(fieldNames(), new String[]{StaleSample.class.getName()},
+                                                fieldTypes(), fieldFlags());
+    }
+
+    @Override public boolean hasAccessor(int index) {
+        return true;
+    }
+
+    @Override public Object get(Object object, int index) {
+        accessed++;
+        return ((StaleSample) object).count;
+    }
+
+    @Override public void set(Object object, int index, Object value) {
+        accessed++;
+        ((StaleSample) object).count = (Long) value;
+    }
+}
+
+class TrustedSample implements Codable {
+    public int count;
+    public String unlisted;
+}
+
+/** Metadata generated before {@link TrustedSample#unlisted} existed, with a flag reflection would not see. */
+class TrustedSample$$CodecInfo implements GeneratedClassInfo {
+
+    @Override public Class<?> type() {
+        return TrustedSample.class;
+    }
+
+    @Override public String[] fieldNames() {
+        return new String[]{"count"};
+    }
+
+    @Override public Class<?>[] fieldOwners() {
+        return new Class<?>[]{TrustedSample.class};
+    }
+
+    @Override public String[] fieldTypes() {
+        return new String[]{"int"};
+    }
+
+    @Override public int[] fieldFlags() {
+        return new int[]{CodableFieldInfo.REQUIRED};
+    }
+
+    @Override public int signatureHash() {
+        return GeneratedClassInfo.signatureHash(fieldNames(), new String[]{TrustedSample.class.getName()},
+                                                fieldTypes(), fieldFlags());
+    }
+
+    @Override public boolean hasAccessor(int index) {
+        return false;
+    }
+
+    @Override public Object get(Object object, int index) {
+        throw new IllegalArgumentException("no accessor for field " + index);
+    }
+
+    @Override public void set(Object object, int index, Object value) {
+        throw new IllegalArgumentException("no accessor for field " + index);
+    }
+}
+
+class UnindexedSample implements Codable {
+    public int count;
+}
+
+/** Not listed in the test index, so it is never loaded. */
+class UnindexedSample$$CodecInfo extends TrustedSample$$CodecInfo {
+
+    @Override public Class<?> type() {
+        return UnindexedSample.class;
+    }
+}
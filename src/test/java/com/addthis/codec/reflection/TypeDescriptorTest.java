@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.addthis.codec.reflection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TypeDescriptorTest {
+
+    public static class StringList extends ArrayList<String> {}
+
+    public static class Node extends ArrayList<Node> {}
+
+    public static class Holder {
+        public Map<String, List<int[]>> nested;
+        public List<StringList> lists;
+        public Node node;
+    }
+
+    private static TypeDescriptor field(String name) {
+        return Fields.getClassFieldMap(Holder.class).fields().get(name).getTypeDescriptor();
+    }
+
+    @Test
+    public void nestedContainers() {
+        TypeDescriptor nested = field("nested");
+        assertEquals("Map<String, List<int[]>>", nested.toString());
+        assertSame(TypeDescriptor.Kind.MAP, nested.getKind());
+        TypeDescriptor list = nested.getElementType();
+        assertSame(TypeDescriptor.Kind.COLLECTION, list.getKind());
+        assertSame(int[].class, list.getElementType().getRawType());
+        assertSame(int.class, list.getElementType().getElementType().getRawType());
+    }
+
+    @Test
+    public void subclassArguments() {
+        assertEquals("List<StringList<String>>", field("lists").toString());
+    }
+
+    @Test
+    public void recursiveSubclass() {
+        TypeDescriptor node = field("node");
+        assertSame(TypeDescriptor.Kind.COLLECTION, node.getKind());
+        assertSame(TypeDescriptor.Kind.VALUE, node.getElementType().getKind());
+    }
+}